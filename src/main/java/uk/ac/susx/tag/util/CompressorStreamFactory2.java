@@ -85,6 +85,7 @@ public class CompressorStreamFactory2 extends CompressorStreamFactory {
     private static final int DEFAULT_XZ_PRESET = LZMA2Options.PRESET_DEFAULT;
     private static final boolean DEFAULT_NAME_DETECTION_FALLBACK = false;
     private static final boolean DEFAULT_TRANSPARENT_SIGNATURE_DETECTION = false;
+    private static final int DEFAULT_BZIP2_DECOMPRESSION_THREADS = 1;
     //
     // configuration fields
     //
@@ -134,6 +135,11 @@ public class CompressorStreamFactory2 extends CompressorStreamFactory {
      * stream without alternation.
      */
     private final boolean transparentSignatureDetection;
+    /**
+     * Number of threads used to decompress multi-stream BZip2 archives. When greater than 1, and concatenated
+     * decompression is enabled, BZip2 input is decompressed by a {@link ParallelBZip2CompressorInputStream}.
+     */
+    private final int bzip2DecompressionThreads;
 
     /**
      * Private constructor used by the builder.
@@ -146,6 +152,7 @@ public class CompressorStreamFactory2 extends CompressorStreamFactory {
      * @param nameDetectionFallback         whether name detection should fall back to attempting signature detection
      * @param transparentSignatureDetection whether signature detection should fall back to returning a no-op
      *                                      compressor.
+     * @param bzip2DecompressionThreads     number of threads used to decompress multi-stream BZip2 archives
      */
     private CompressorStreamFactory2(final boolean decompressConcatenated,
                                      final Pack200Strategy pack200Strategy,
@@ -153,7 +160,8 @@ public class CompressorStreamFactory2 extends CompressorStreamFactory {
                                      final int bzip2BlockSize,
                                      final int xzPreset,
                                      final boolean nameDetectionFallback,
-                                     final boolean transparentSignatureDetection) {
+                                     final boolean transparentSignatureDetection,
+                                     final int bzip2DecompressionThreads) {
         this.decompressConcatenated = decompressConcatenated;
         this.pack200Strategy = checkNotNull(pack200Strategy, "pack200Strategy");
         this.pack200Props = checkNotNull(pack200Props, "pack200Props");
@@ -161,6 +169,7 @@ public class CompressorStreamFactory2 extends CompressorStreamFactory {
         this.xzPreset = xzPreset;
         this.nameDetectionFallback = nameDetectionFallback;
         this.transparentSignatureDetection = transparentSignatureDetection;
+        this.bzip2DecompressionThreads = bzip2DecompressionThreads;
     }
 
     /**
@@ -177,7 +186,8 @@ public class CompressorStreamFactory2 extends CompressorStreamFactory {
                 DEFAULT_BZIP2_BLOCK_SIZE,
                 DEFAULT_XZ_PRESET,
                 DEFAULT_NAME_DETECTION_FALLBACK,
-                DEFAULT_TRANSPARENT_SIGNATURE_DETECTION);
+                DEFAULT_TRANSPARENT_SIGNATURE_DETECTION,
+                DEFAULT_BZIP2_DECOMPRESSION_THREADS);
     }
 
     /**
@@ -274,6 +284,23 @@ public class CompressorStreamFactory2 extends CompressorStreamFactory {
         return transparentSignatureDetection;
     }
 
+    /**
+     * Get the number of threads used to decompress multi-stream BZip2 archives. Parallel decompression is only used
+     * when this is greater than 1 and concatenated decompression is enabled.
+     *
+     * @return number of BZip2 decompression threads
+     */
+    public int getBzip2DecompressionThreads() {
+        return bzip2DecompressionThreads;
+    }
+
+    /**
+     * Whether BZip2 input should be decompressed by a {@link ParallelBZip2CompressorInputStream}.
+     */
+    private boolean isParallelBZip2Decompression() {
+        return decompressConcatenated && bzip2DecompressionThreads > 1;
+    }
+
     private static final int SIGNATURE_LENGTH = 12;
 
     /**
@@ -301,7 +328,9 @@ public class CompressorStreamFactory2 extends CompressorStreamFactory {
             int signatureLength = inputStream.read(signature);
             inputStream.reset();
             if (BZip2CompressorInputStream.matches(signature, signatureLength)) {
-                return createBZip2CompressorInputStream(inputStream);
+                return isParallelBZip2Decompression()
+                        ? createParallelBZip2CompressorInputStream(inputStream)
+                        : createBZip2CompressorInputStream(inputStream);
             } else if (GzipCompressorInputStream.matches(signature, signatureLength)) {
                 return createGZipCompressorInputStream(inputStream);
             } else if (XZCompressorInputStream.matches(signature, signatureLength)) {
@@ -329,7 +358,9 @@ public class CompressorStreamFactory2 extends CompressorStreamFactory {
             if (GZIP.equalsIgnoreCase(fileName)) {
                 return createGZipCompressorInputStream(inputStream);
             } else if (BZIP2.equalsIgnoreCase(fileName)) {
-                return createBZip2CompressorInputStream(inputStream);
+                return isParallelBZip2Decompression()
+                        ? createParallelBZip2CompressorInputStream(inputStream)
+                        : createBZip2CompressorInputStream(inputStream);
             } else if (XZ.equalsIgnoreCase(fileName)) {
                 return createXZCompressorInputStream(inputStream);
             } else if (PACK200.equalsIgnoreCase(fileName)) {
@@ -391,6 +422,19 @@ public class CompressorStreamFactory2 extends CompressorStreamFactory {
                 decompressConcatenated);
     }
 
+    /**
+     * Create a BZip2 decompressor that finds the individual streams in a multi-stream archive and decompresses them
+     * concurrently, using the configured number of BZip2 decompression threads.
+     *
+     * @param inputStream the compressed input
+     * @return the compressor input stream
+     */
+    public ParallelBZip2CompressorInputStream createParallelBZip2CompressorInputStream(
+            final InputStream inputStream) {
+        return new ParallelBZip2CompressorInputStream(checkNotNull(inputStream, "inputStream"),
+                bzip2DecompressionThreads);
+    }
+
     public XZCompressorInputStream createXZCompressorInputStream(
             final InputStream inputStream)
             throws IOException {
@@ -464,6 +508,7 @@ public class CompressorStreamFactory2 extends CompressorStreamFactory {
         private int xzPreset = DEFAULT_XZ_PRESET;
         private boolean nameDetectionFallback = DEFAULT_NAME_DETECTION_FALLBACK;
         private boolean transparentSignatureDetection = DEFAULT_TRANSPARENT_SIGNATURE_DETECTION;
+        private int bzip2DecompressionThreads = DEFAULT_BZIP2_DECOMPRESSION_THREADS;
 
         /**
          * Instantiated using {@link CompressorStreamFactory2#builder() }
@@ -601,6 +646,22 @@ public class CompressorStreamFactory2 extends CompressorStreamFactory {
             return this;
         }
 
+        /**
+         * Set the number of threads used to decompress multi-stream BZip2 archives, such as the Wikipedia
+         * <tt>pages-articles-multistream</tt> dumps. When greater than 1, and concatenated decompression is enabled,
+         * the streams are found and decompressed concurrently. Otherwise BZip2 input is decompressed sequentially.
+         *
+         * @param bzip2DecompressionThreads number of BZip2 decompression threads
+         * @throws IllegalArgumentException if bzip2DecompressionThreads is less than 1
+         */
+        public Builder setBzip2DecompressionThreads(int bzip2DecompressionThreads) {
+            checkArgument(bzip2DecompressionThreads >= 1,
+                    "Argument bzip2DecompressionThreads (%s) is less than minimum value 1",
+                    bzip2DecompressionThreads);
+            this.bzip2DecompressionThreads = bzip2DecompressionThreads;
+            return this;
+        }
+
         /**
          * Construct a new CompressorStreamFactory2 instance using the current
          * builder configuration.
@@ -618,7 +679,8 @@ public class CompressorStreamFactory2 extends CompressorStreamFactory {
                     bzip2BlockSize,
                     xzPreset,
                     nameDetectionFallback,
-                    transparentSignatureDetection);
+                    transparentSignatureDetection,
+                    bzip2DecompressionThreads);
         }
     }
 }
@@ -0,0 +1,342 @@
+/*
+ * Copyright (c) 2010-2013, University of Sussex
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the University of Sussex nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.ac.susx.tag.util;
+
+import com.google.common.base.Throwables;
+import com.google.common.io.ByteStreams;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.commons.compress.compressors.CompressorInputStream;
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.SequenceInputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkPositionIndexes;
+
+/**
+ * ParallelBZip2CompressorInputStream decompresses multi-stream BZip2 archives, such as the
+ * <tt>pages-articles-multistream.xml.bz2</tt> Wikipedia dumps, using a pool of threads.
+ * <p/>
+ * The compressed input is read sequentially and split into chunks at the start of BZip2 streams. A stream starts with
+ * the byte aligned header "BZh" followed by the block-size digit, and then either the block magic number or the
+ * end-of-stream magic number, so the boundaries can be found without decompressing anything. Each chunk holds one or
+ * more whole streams, and is decompressed as a separate task. The decompressed chunks are read back in the order they
+ * occurred in the input, so the output of this stream is identical to that of a {@link BZip2CompressorInputStream}
+ * with concatenated decompression enabled.
+ * <p/>
+ * If no stream boundary is found within the maximum chunk size (for example because the archive consists of a single
+ * huge stream) then the remainder of the input is decompressed sequentially on the reading thread.
+ *
+ * @author Hamish Morgan
+ */
+@NotThreadSafe
+@Nonnull
+public class ParallelBZip2CompressorInputStream extends CompressorInputStream {
+
+    public static final int DEFAULT_MIN_CHUNK_SIZE = 1 << 20;
+    public static final int DEFAULT_MAX_CHUNK_SIZE = 64 << 20;
+
+    private static final byte[] EMPTY = new byte[0];
+    private static final int READ_SIZE = 1 << 16;
+
+    // Stream header ("BZh" followed by the block size digit) and the two magic numbers that may follow it
+    private static final int SIGNATURE_LENGTH = 10;
+    private static final byte[] BLOCK_MAGIC = {0x31, 0x41, 0x59, 0x26, 0x53, 0x59};
+    private static final byte[] END_OF_STREAM_MAGIC = {0x17, 0x72, 0x45, 0x38, 0x50, (byte) 0x90};
+
+    private final InputStream inputStream;
+    private final ExecutorService executor;
+    private final int maxPendingChunks;
+    private final int minChunkSize;
+    private final int maxChunkSize;
+
+    /**
+     * Chunks that have been submitted for decompression, in input order.
+     */
+    private final Queue<Future<byte[]>> pending;
+    /**
+     * Compressed data that has been read from the input but not yet assigned to a chunk.
+     */
+    private byte[] buffer;
+    private int bufferLength = 0;
+    /**
+     * Offset in the buffer up to which stream boundaries have already been searched for.
+     */
+    private int scanPosition = 0;
+    private boolean endOfInput = false;
+    /**
+     * Sequential decompressor for the remainder of the input, used once chunking has been abandoned.
+     */
+    private InputStream sequentialStream = null;
+    /**
+     * Decompressed data currently being read, and the read offset into it.
+     */
+    private byte[] current = EMPTY;
+    private int currentPosition = 0;
+    private final byte[] singleByte = new byte[1];
+
+    /**
+     * Construct a new instance, decompressing streams from the given input using the given number of threads.
+     *
+     * @param inputStream the compressed input
+     * @param numThreads  number of threads to decompress with
+     * @throws IllegalArgumentException if numThreads is less than 1
+     */
+    public ParallelBZip2CompressorInputStream(final InputStream inputStream, final int numThreads) {
+        this(inputStream, numThreads, DEFAULT_MIN_CHUNK_SIZE, DEFAULT_MAX_CHUNK_SIZE);
+    }
+
+    /**
+     * Construct a new instance, decompressing streams from the given input using the given number of threads.
+     *
+     * @param inputStream  the compressed input
+     * @param numThreads   number of threads to decompress with
+     * @param minChunkSize number of compressed bytes that are grouped together (as whole streams) before a chunk is
+     *                     submitted for decompression
+     * @param maxChunkSize number of compressed bytes that will be searched for a stream boundary before falling back
+     *                     to sequential decompression
+     * @throws IllegalArgumentException if numThreads or minChunkSize is less than 1, or maxChunkSize is less than
+     *                                  minChunkSize
+     */
+    public ParallelBZip2CompressorInputStream(final InputStream inputStream, final int numThreads,
+                                              final int minChunkSize, final int maxChunkSize) {
+        checkArgument(numThreads >= 1, "numThreads < 1");
+        checkArgument(minChunkSize >= 1, "minChunkSize < 1");
+        checkArgument(maxChunkSize >= minChunkSize, "maxChunkSize < minChunkSize");
+        this.inputStream = checkNotNull(inputStream, "inputStream");
+        this.minChunkSize = minChunkSize;
+        this.maxChunkSize = maxChunkSize;
+        // Keep every thread busy while the reader consumes the chunk at the head of the queue
+        this.maxPendingChunks = 2 * numThreads;
+        this.pending = new ArrayDeque<Future<byte[]>>(maxPendingChunks);
+        this.buffer = new byte[minChunkSize + READ_SIZE];
+        this.executor = Executors.newFixedThreadPool(numThreads, new ThreadFactoryBuilder()
+                .setNameFormat("bzip2-decompressor-%d")
+                .setDaemon(true)
+                .build());
+    }
+
+    @Override
+    public int read() throws IOException {
+        final int n = read(singleByte, 0, 1);
+        return n == -1 ? -1 : singleByte[0] & 0xFF;
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len) throws IOException {
+        checkNotNull(b, "b");
+        checkPositionIndexes(off, off + len, b.length);
+        if (len == 0) {
+            return 0;
+        }
+
+        while (currentPosition == current.length) {
+            fillPipeline();
+            final Future<byte[]> next = pending.poll();
+            if (next == null) {
+                if (sequentialStream == null) {
+                    return -1;
+                }
+                final int n = sequentialStream.read(b, off, len);
+                count(n);
+                return n;
+            }
+            current = await(next);
+            currentPosition = 0;
+        }
+
+        final int n = Math.min(len, current.length - currentPosition);
+        System.arraycopy(current, currentPosition, b, off, n);
+        currentPosition += n;
+        count(n);
+        return n;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return current.length - currentPosition;
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (Future<byte[]> future : pending) {
+            future.cancel(true);
+        }
+        pending.clear();
+        executor.shutdownNow();
+        current = EMPTY;
+        currentPosition = 0;
+        if (sequentialStream != null) {
+            // also closes the underlying input
+            sequentialStream.close();
+        } else {
+            inputStream.close();
+        }
+    }
+
+    /**
+     * Submit chunks for decompression until enough are pending, or there are no more to be found.
+     */
+    private void fillPipeline() throws IOException {
+        while (pending.size() < maxPendingChunks && sequentialStream == null) {
+            final byte[] chunk = nextChunk();
+            if (chunk == null) {
+                return;
+            }
+            pending.add(executor.submit(new DecompressTask(chunk)));
+        }
+    }
+
+    /**
+     * Read the next chunk of whole streams from the input. If the maximum chunk size is exceeded without finding a
+     * stream boundary, the sequential decompressor is created from the buffered and remaining input.
+     *
+     * @return the next chunk, or null if there are no more chunks
+     */
+    private byte[] nextChunk() throws IOException {
+        while (true) {
+            final int boundary = findStreamBoundary();
+            if (boundary != -1) {
+                return takeChunk(boundary);
+            } else if (endOfInput) {
+                return bufferLength > 0 ? takeChunk(bufferLength) : null;
+            } else if (bufferLength >= maxChunkSize) {
+                sequentialStream = new BZip2CompressorInputStream(new SequenceInputStream(
+                        new ByteArrayInputStream(buffer, 0, bufferLength), inputStream), true);
+                buffer = EMPTY;
+                bufferLength = 0;
+                return null;
+            }
+            readMore();
+        }
+    }
+
+    /**
+     * Search the buffer for the start of a stream, at least the minimum chunk size from the start of the buffer.
+     *
+     * @return offset of the stream start, or -1 if not found
+     */
+    private int findStreamBoundary() {
+        final int end = bufferLength - SIGNATURE_LENGTH;
+        for (int i = Math.max(scanPosition, minChunkSize); i <= end; i++) {
+            if (isStreamStart(buffer, i)) {
+                return i;
+            }
+        }
+        scanPosition = Math.max(scanPosition, end + 1);
+        return -1;
+    }
+
+    private static boolean isStreamStart(final byte[] b, final int off) {
+        if (b[off] != 'B' || b[off + 1] != 'Z' || b[off + 2] != 'h' || b[off + 3] < '1' || b[off + 3] > '9') {
+            return false;
+        }
+        return regionMatches(b, off + 4, BLOCK_MAGIC) || regionMatches(b, off + 4, END_OF_STREAM_MAGIC);
+    }
+
+    private static boolean regionMatches(final byte[] b, final int off, final byte[] magic) {
+        for (int i = 0; i < magic.length; i++) {
+            if (b[off + i] != magic[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private byte[] takeChunk(final int length) {
+        final byte[] chunk = Arrays.copyOf(buffer, length);
+        System.arraycopy(buffer, length, buffer, 0, bufferLength - length);
+        bufferLength -= length;
+        scanPosition = 0;
+        return chunk;
+    }
+
+    private void readMore() throws IOException {
+        if (buffer.length - bufferLength < READ_SIZE) {
+            buffer = Arrays.copyOf(buffer, Math.max(2 * buffer.length, bufferLength + READ_SIZE));
+        }
+        final int n = inputStream.read(buffer, bufferLength, buffer.length - bufferLength);
+        if (n == -1) {
+            endOfInput = true;
+        } else {
+            bufferLength += n;
+        }
+    }
+
+    private static byte[] await(final Future<byte[]> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for decompression.");
+        } catch (ExecutionException e) {
+            Throwables.propagateIfInstanceOf(e.getCause(), IOException.class);
+            throw new IOException("BZip2 decompression failed.", e.getCause());
+        }
+    }
+
+    /**
+     * Decompress a chunk of one or more complete BZip2 streams.
+     */
+    private static final class DecompressTask implements Callable<byte[]> {
+
+        private final byte[] chunk;
+
+        DecompressTask(final byte[] chunk) {
+            this.chunk = chunk;
+        }
+
+        @Override
+        public byte[] call() throws IOException {
+            final InputStream in = new BZip2CompressorInputStream(new ByteArrayInputStream(chunk), true);
+            try {
+                return ByteStreams.toByteArray(in);
+            } finally {
+                in.close();
+            }
+        }
+    }
+}
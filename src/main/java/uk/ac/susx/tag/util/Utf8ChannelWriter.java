@@ -0,0 +1,221 @@
+/*
+ * Copyright (c) 2010-2013, University of Sussex
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the University of Sussex nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.ac.susx.tag.util;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * A <tt>Writer</tt> that encodes characters as UTF-8 directly into a reusable byte buffer, which is written to a
+ * channel whenever it fills.
+ * <p/>
+ * This avoids the charset encoder and the stream layers of an <tt>OutputStreamWriter</tt>, while producing the same
+ * bytes: malformed surrogates are replaced with <tt>'?'</tt>. A high surrogate at the end of one write is held until
+ * the next, so surrogate pairs may be split across writes.
+ *
+ * @author Hamish Morgan
+ */
+@NotThreadSafe
+public class Utf8ChannelWriter extends Writer {
+
+    public static final int DEFAULT_BUFFER_SIZE = 1024 * 1024;
+
+    /**
+     * Most bytes produced by a single call to {@link #encode(char)} or {@link #encode(char, char)}.
+     */
+    private static final int MAX_BYTES_PER_CHAR = 4;
+
+    private static final byte REPLACEMENT = '?';
+
+    private final WritableByteChannel channel;
+
+    private final ByteBuffer buffer;
+
+    private final byte[] bytes;
+
+    private int position = 0;
+
+    /**
+     * High surrogate from the end of the last write, waiting for it's low surrogate, or 0 if there is none.
+     */
+    private char pendingHighSurrogate = 0;
+
+    private boolean closed = false;
+
+    /**
+     * @param channel    destination of the encoded bytes
+     * @param bufferSize number of bytes to buffer before writing to the channel
+     * @throws IllegalArgumentException if bufferSize is less than 4
+     */
+    public Utf8ChannelWriter(WritableByteChannel channel, int bufferSize) {
+        checkArgument(bufferSize >= MAX_BYTES_PER_CHAR, "bufferSize < " + MAX_BYTES_PER_CHAR);
+        this.channel = checkNotNull(channel, "channel");
+        this.buffer = ByteBuffer.allocate(bufferSize);
+        this.bytes = buffer.array();
+    }
+
+    public Utf8ChannelWriter(WritableByteChannel channel) {
+        this(channel, DEFAULT_BUFFER_SIZE);
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+        ensureOpen();
+        write((char) c);
+    }
+
+    @Override
+    public void write(char[] chars, int offset, int length) throws IOException {
+        ensureOpen();
+        checkNotNull(chars, "chars");
+        if (offset < 0 || length < 0 || offset + length > chars.length || offset + length < 0)
+            throw new IndexOutOfBoundsException();
+
+        final int end = offset + length;
+        int i = offset;
+        while (i < end) {
+            if (pendingHighSurrogate == 0) {
+                // Fast path for runs of ASCII
+                final int asciiEnd = Math.min(end, i + bytes.length - position);
+                while (i < asciiEnd && chars[i] < 0x80)
+                    bytes[position++] = (byte) chars[i++];
+            }
+            if (i < end) {
+                if (pendingHighSurrogate == 0 && chars[i] < 0x80)
+                    drain();
+                else
+                    write(chars[i++]);
+            }
+        }
+    }
+
+    @Override
+    public void write(String str, int offset, int length) throws IOException {
+        ensureOpen();
+        checkNotNull(str, "str");
+        if (offset < 0 || length < 0 || offset + length > str.length() || offset + length < 0)
+            throw new IndexOutOfBoundsException();
+        for (int i = offset; i < offset + length; i++)
+            write(str.charAt(i));
+    }
+
+    /**
+     * Write any buffered bytes to the channel. A trailing high surrogate remains held, waiting for it's pair.
+     */
+    @Override
+    public void flush() throws IOException {
+        ensureOpen();
+        drain();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed)
+            return;
+        try {
+            if (pendingHighSurrogate != 0) {
+                pendingHighSurrogate = 0;
+                reserve(1);
+                bytes[position++] = REPLACEMENT;
+            }
+            drain();
+        } finally {
+            closed = true;
+            channel.close();
+        }
+    }
+
+    private void write(char c) throws IOException {
+        if (pendingHighSurrogate != 0) {
+            final char high = pendingHighSurrogate;
+            pendingHighSurrogate = 0;
+            if (Character.isLowSurrogate(c)) {
+                encode(high, c);
+                return;
+            }
+            reserve(1);
+            bytes[position++] = REPLACEMENT;
+        }
+        if (Character.isHighSurrogate(c))
+            pendingHighSurrogate = c;
+        else
+            encode(c);
+    }
+
+    private void encode(char c) throws IOException {
+        reserve(MAX_BYTES_PER_CHAR);
+        if (c < 0x80) {
+            bytes[position++] = (byte) c;
+        } else if (c < 0x800) {
+            bytes[position++] = (byte) (0xC0 | (c >> 6));
+            bytes[position++] = (byte) (0x80 | (c & 0x3F));
+        } else if (Character.isLowSurrogate(c)) {
+            bytes[position++] = REPLACEMENT;
+        } else {
+            bytes[position++] = (byte) (0xE0 | (c >> 12));
+            bytes[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+            bytes[position++] = (byte) (0x80 | (c & 0x3F));
+        }
+    }
+
+    private void encode(char high, char low) throws IOException {
+        reserve(MAX_BYTES_PER_CHAR);
+        final int codePoint = Character.toCodePoint(high, low);
+        bytes[position++] = (byte) (0xF0 | (codePoint >> 18));
+        bytes[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+        bytes[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+        bytes[position++] = (byte) (0x80 | (codePoint & 0x3F));
+    }
+
+    private void reserve(int count) throws IOException {
+        if (position + count > bytes.length)
+            drain();
+    }
+
+    private void drain() throws IOException {
+        buffer.clear();
+        buffer.limit(position);
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+        position = 0;
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed)
+            throw new IOException("Writer is closed.");
+    }
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright (c) 2010-2013, University of Sussex
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the University of Sussex nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.ac.susx.tag.wag;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * An <tt>AliasHandler</tt> which counts how often each distinct alias (type, sub-type, source and target) occurs, and
+ * forwards one alias per distinct alias, holding the total in it's {@link Alias#getCount() count}. Totals can only be
+ * known once every alias has been seen, so they are forwarded when the handler is closed, ordered by type, sub-type,
+ * source, and target.
+ * <p/>
+ * Counts are accumulated in memory. When the (approximate) memory budget is exceeded the partial counts are sorted
+ * and spilled to a run file on disk, and the runs are merged (summing the counts of aliases that occur in more than
+ * one run) when the handler is closed, using an {@link ExternalAliasSorter}.
+ *
+ * @author Hamish Morgan
+ */
+@NotThreadSafe
+public class AggregatingAliasHandler extends ForwardingAliasHandler {
+
+    public static final long DEFAULT_MEMORY_BUDGET = 256L * 1024 * 1024;
+
+    /**
+     * Approximate number of bytes used by each distinct alias in memory, in addition to the characters of it's
+     * strings.
+     */
+    private static final int ENTRY_OVERHEAD_BYTES = 256;
+
+    /**
+     * Orders aliases by type, sub-type, source, and then target.
+     */
+    static final Comparator<Alias> ALIAS_ORDER = new Comparator<Alias>() {
+        @Override
+        public int compare(Alias a, Alias b) {
+            int cmp = a.getType().compareTo(b.getType());
+            if (cmp == 0)
+                cmp = a.getSubType().compareTo(b.getSubType());
+            if (cmp == 0)
+                cmp = a.getSource().compareTo(b.getSource());
+            if (cmp == 0)
+                cmp = a.getTarget().compareTo(b.getTarget());
+            return cmp;
+        }
+    };
+
+    private final long memoryBudget;
+
+    /**
+     * Partial count of each distinct alias seen since the last spill. The keys all have a count of 1.
+     */
+    private final Map<Alias, long[]> counts = Maps.newHashMap();
+
+    private long memoryUsed = 0;
+
+    /**
+     * Runs of sorted partial counts, which are merged when the handler is closed.
+     */
+    private final ExternalAliasSorter sorter;
+
+    private boolean finished = false;
+
+    /**
+     * Construct a new aggregating handler, which spills to the default temporary directory.
+     *
+     * @param delegate     handler that the aggregated aliases are forwarded to
+     * @param memoryBudget approximate maximum number of bytes to hold in memory
+     * @throws IllegalArgumentException if memoryBudget is not positive
+     */
+    public AggregatingAliasHandler(AliasHandler delegate, long memoryBudget) {
+        this(delegate, memoryBudget, new File(System.getProperty("java.io.tmpdir")));
+    }
+
+    /**
+     * @param delegate      handler that the aggregated aliases are forwarded to
+     * @param memoryBudget  approximate maximum number of bytes to hold in memory
+     * @param tempDirectory directory in which to create run files
+     * @throws IllegalArgumentException if memoryBudget is not positive
+     */
+    public AggregatingAliasHandler(AliasHandler delegate, long memoryBudget, File tempDirectory) {
+        super(delegate);
+        checkArgument(memoryBudget > 0, "memoryBudget <= 0");
+        this.memoryBudget = memoryBudget;
+        this.sorter = new ExternalAliasSorter(ALIAS_ORDER, true, ExternalAliasSorter.DEFAULT_MERGE_WIDTH,
+                checkNotNull(tempDirectory, "tempDirectory"), "wag-aggregate-");
+    }
+
+    @Override
+    public void handle(Alias alias) {
+        checkNotNull(alias, "alias");
+        if (finished)
+            throw new IllegalStateException("Aliases have already been forwarded.");
+
+        final Alias key = alias.getCount() == 1 ? alias
+                : new Alias(alias.getType(), alias.getSubType(), alias.getSource(), alias.getTarget());
+        final long[] count = counts.get(key);
+        if (count != null) {
+            count[0] += alias.getCount();
+            return;
+        }
+
+        counts.put(key, new long[]{alias.getCount()});
+        memoryUsed += ENTRY_OVERHEAD_BYTES + 2 * (alias.getSubType().length()
+                + alias.getSource().length() + alias.getTarget().length());
+        if (memoryUsed >= memoryBudget) {
+            try {
+                sorter.addRun(sortCounts());
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to spill alias counts to disk.", e);
+            }
+            counts.clear();
+            memoryUsed = 0;
+        }
+    }
+
+    /**
+     * Forward the aggregated aliases, then close the delegate.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            if (!finished) {
+                finished = true;
+                if (!sorter.hasRuns()) {
+                    for (Alias alias : sortCounts())
+                        super.handle(alias);
+                } else {
+                    if (!counts.isEmpty())
+                        sorter.addRun(sortCounts());
+                    counts.clear();
+                    sorter.merge(new AliasHandler() {
+                        @Override
+                        public void handle(Alias alias) {
+                            AggregatingAliasHandler.super.handle(alias);
+                        }
+                    });
+                }
+            }
+        } finally {
+            try {
+                sorter.delete();
+            } finally {
+                counts.clear();
+                super.close();
+            }
+        }
+    }
+
+    /**
+     * Get the aliases that have been counted in memory, with their counts, in order.
+     */
+    private List<Alias> sortCounts() {
+        final List<Alias> aliases = Lists.newArrayListWithCapacity(counts.size());
+        for (Map.Entry<Alias, long[]> entry : counts.entrySet()) {
+            final Alias key = entry.getKey();
+            aliases.add(new Alias(key.getType(), key.getSubType(), key.getSource(), key.getTarget(),
+                    entry.getValue()[0]));
+        }
+        Collections.sort(aliases, ALIAS_ORDER);
+        return aliases;
+    }
+}
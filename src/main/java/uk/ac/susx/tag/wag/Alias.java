@@ -3,6 +3,7 @@ package uk.ac.susx.tag.wag;
 import javax.annotation.Nonnull;
 import javax.annotation.concurrent.Immutable;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 /**
@@ -17,12 +18,23 @@ public final class Alias {
     private final String subType;
     private final String target;
     private final String source;
+    private final long count;
 
     public Alias(AliasType type, String subType, String source, String target) {
+        this(type, subType, source, target, 1);
+    }
+
+    /**
+     * @param count number of times the alias was found (when aliases have been aggregated)
+     * @throws IllegalArgumentException if count is less than 1
+     */
+    public Alias(AliasType type, String subType, String source, String target, long count) {
+        checkArgument(count >= 1, "count < 1");
         this.type = checkNotNull(type, "type");
         this.subType = checkNotNull(subType, "subType");
         this.target = checkNotNull(target, "target");
         this.source = checkNotNull(source, "source");
+        this.count = count;
     }
 
 
@@ -42,6 +54,13 @@ public final class Alias {
         return subType;
     }
 
+    /**
+     * @return number of times the alias was found; 1 unless aliases have been aggregated
+     */
+    public long getCount() {
+        return count;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -52,7 +71,8 @@ public final class Alias {
         return source.equals(synonym.source)
                 && target.equals(synonym.target)
                 && type == synonym.type
-                && subType.equals(synonym.subType);
+                && subType.equals(synonym.subType)
+                && count == synonym.count;
 
     }
 
@@ -62,12 +82,13 @@ public final class Alias {
         result = 31 * result + target.hashCode();
         result = 31 * result + source.hashCode();
         result = 31 * result + subType.hashCode();
+        result = 31 * result + (int) (count ^ (count >>> 32));
         return result;
     }
 
     @Override
     public String toString() {
         return type + (subType.isEmpty() ? "" : "/" + subType) +
-                "[" + source + " => " + target + "]";
+                "[" + source + " => " + target + "]" + (count == 1 ? "" : " x" + count);
     }
 }
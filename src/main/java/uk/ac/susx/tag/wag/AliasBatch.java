@@ -0,0 +1,468 @@
+/*
+ * Copyright (c) 2010-2013, University of Sussex
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the University of Sussex nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.ac.susx.tag.wag;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkPositionIndexes;
+
+/**
+ * An ordered batch of aliases, passed between handlers in one call so that per-alias work can be amortised (see
+ * {@link BatchAliasHandler}.) Batches are intended to be filled, handled, cleared and then reused.
+ * <p/>
+ * Aliases are stored in columns of primitives, rather than as objects: types as bytes, subtypes as codes into a
+ * dictionary of the distinct subtypes in the batch, and the source and target text as consecutive ranges of a single
+ * shared character array. Counts are only stored once some alias has a count other than 1. Once a batch has grown to
+ * it's working size, adding and reading aliases allocates nothing; read them with a {@link Cursor} (see
+ * {@link #cursor(Cursor)}), which can be reset and reused. {@link #get(int)} builds an <tt>Alias</tt> on demand, for
+ * convenience.
+ *
+ * @author Hamish Morgan
+ */
+@NotThreadSafe
+public final class AliasBatch {
+
+    private static final int DEFAULT_INITIAL_CAPACITY = 16;
+
+    /**
+     * Initial number of text characters allocated for each alias of the initial capacity.
+     */
+    private static final int INITIAL_CHARS_PER_ALIAS = 32;
+
+    private static final AliasType[] TYPES = AliasType.values();
+
+    private int size = 0;
+
+    private byte[] types;
+
+    private int[] subTypes;
+
+    /**
+     * Count of each alias, or null if every count is 1.
+     */
+    private long[] counts = null;
+
+    /**
+     * The source of alias i occupies chars [targetEnds[i - 1], sourceEnds[i]), and it's target
+     * [sourceEnds[i], targetEnds[i]).
+     */
+    private int[] sourceEnds;
+
+    private int[] targetEnds;
+
+    private char[] chars;
+
+    private int charCount = 0;
+
+    private final List<String> subTypeDictionary = Lists.newArrayList();
+
+    private final Map<String, Integer> subTypeCodes = Maps.newHashMap();
+
+    public AliasBatch() {
+        this(DEFAULT_INITIAL_CAPACITY);
+    }
+
+    /**
+     * @param initialCapacity number of aliases the batch can hold before it must grow
+     * @throws IllegalArgumentException if initialCapacity is negative
+     */
+    public AliasBatch(int initialCapacity) {
+        checkArgument(initialCapacity >= 0, "initialCapacity < 0");
+        types = new byte[initialCapacity];
+        subTypes = new int[initialCapacity];
+        sourceEnds = new int[initialCapacity];
+        targetEnds = new int[initialCapacity];
+        chars = new char[initialCapacity * INITIAL_CHARS_PER_ALIAS];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Build an <tt>Alias</tt> holding a copy of the alias at the given position.
+     *
+     * @param index position of the alias in the batch
+     * @return alias at the given position
+     * @throws IndexOutOfBoundsException if index is not less than the size of the batch
+     */
+    public Alias get(int index) {
+        checkIndex(index);
+        final int sourceStart = index == 0 ? 0 : targetEnds[index - 1];
+        return new Alias(
+                TYPES[types[index]],
+                subTypeDictionary.get(subTypes[index]),
+                new String(chars, sourceStart, sourceEnds[index] - sourceStart),
+                new String(chars, sourceEnds[index], targetEnds[index] - sourceEnds[index]),
+                counts == null ? 1 : counts[index]);
+    }
+
+    /**
+     * @return a new cursor, positioned before the first alias of this batch
+     */
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    /**
+     * Get a cursor positioned before the first alias of this batch, reusing the given cursor if it reads this batch.
+     * Handlers that are passed the same batch repeatedly can keep the cursor, so reading the batch allocates nothing.
+     *
+     * @param reuse cursor to reuse, or null
+     * @return the given cursor, reset, if it reads this batch; otherwise a new cursor
+     */
+    public Cursor cursor(Cursor reuse) {
+        if (reuse != null && reuse.getBatch() == this) {
+            reuse.reset();
+            return reuse;
+        }
+        return new Cursor();
+    }
+
+    public void add(Alias alias) {
+        checkNotNull(alias, "alias");
+        add(alias.getType(), alias.getSubType(), alias.getSource(), alias.getTarget(), alias.getCount());
+    }
+
+    /**
+     * Add an alias to the end of the batch, copying it's text.
+     *
+     * @param type    alias type
+     * @param subType alias subtype
+     * @param source  alias source text
+     * @param target  alias target text
+     * @param count   number of times the alias was found
+     * @throws IllegalArgumentException if count is less than 1
+     */
+    public void add(AliasType type, String subType, String source, String target, long count) {
+        checkNotNull(type, "type");
+        checkNotNull(subType, "subType");
+        checkNotNull(source, "source");
+        checkNotNull(target, "target");
+        checkArgument(count >= 1, "count < 1");
+
+        ensureCapacity(size + 1);
+        ensureCharCapacity(charCount + source.length() + target.length());
+        types[size] = (byte) type.ordinal();
+        subTypes[size] = subTypeCode(subType);
+        source.getChars(0, source.length(), chars, charCount);
+        charCount += source.length();
+        sourceEnds[size] = charCount;
+        target.getChars(0, target.length(), chars, charCount);
+        charCount += target.length();
+        targetEnds[size] = charCount;
+        setCount(size, count);
+        size++;
+    }
+
+    /**
+     * Add an alias to the end of the batch, copying it's text from ranges of the given characters (which may be the
+     * characters of another batch, read with a {@link Cursor}.)
+     *
+     * @param type        alias type
+     * @param subType     alias subtype
+     * @param text        characters holding the source and target text
+     * @param sourceStart offset of the first character of the source
+     * @param sourceEnd   offset after the last character of the source
+     * @param targetStart offset of the first character of the target
+     * @param targetEnd   offset after the last character of the target
+     * @param count       number of times the alias was found
+     * @throws IllegalArgumentException  if count is less than 1
+     * @throws IndexOutOfBoundsException if either range is not within text
+     */
+    public void add(AliasType type, String subType, char[] text, int sourceStart, int sourceEnd,
+                    int targetStart, int targetEnd, long count) {
+        checkNotNull(type, "type");
+        checkNotNull(subType, "subType");
+        checkNotNull(text, "text");
+        checkPositionIndexes(sourceStart, sourceEnd, text.length);
+        checkPositionIndexes(targetStart, targetEnd, text.length);
+        checkArgument(count >= 1, "count < 1");
+
+        final int sourceLength = sourceEnd - sourceStart;
+        final int targetLength = targetEnd - targetStart;
+        ensureCapacity(size + 1);
+        ensureCharCapacity(charCount + sourceLength + targetLength);
+        types[size] = (byte) type.ordinal();
+        subTypes[size] = subTypeCode(subType);
+        System.arraycopy(text, sourceStart, chars, charCount, sourceLength);
+        charCount += sourceLength;
+        sourceEnds[size] = charCount;
+        System.arraycopy(text, targetStart, chars, charCount, targetLength);
+        charCount += targetLength;
+        targetEnds[size] = charCount;
+        setCount(size, count);
+        size++;
+    }
+
+    public void addAll(AliasBatch batch) {
+        checkNotNull(batch, "batch");
+        addAll(batch, 0, batch.size);
+    }
+
+    /**
+     * Add a copy of a range of the aliases in the given batch to the end of this batch.
+     *
+     * @param batch     batch to copy aliases from
+     * @param fromIndex position of the first alias to copy
+     * @param toIndex   position after the last alias to copy
+     * @throws IndexOutOfBoundsException if the range is not within the given batch
+     */
+    public void addAll(AliasBatch batch, int fromIndex, int toIndex) {
+        checkNotNull(batch, "batch");
+        checkArgument(batch != this, "batch is this");
+        checkPositionIndexes(fromIndex, toIndex, batch.size);
+        final int n = toIndex - fromIndex;
+        if (n == 0)
+            return;
+
+        final int charStart = fromIndex == 0 ? 0 : batch.targetEnds[fromIndex - 1];
+        final int charEnd = batch.targetEnds[toIndex - 1];
+        ensureCapacity(size + n);
+        ensureCharCapacity(charCount + charEnd - charStart);
+
+        System.arraycopy(batch.types, fromIndex, types, size, n);
+        System.arraycopy(batch.chars, charStart, chars, charCount, charEnd - charStart);
+        final int shift = charCount - charStart;
+        for (int i = 0; i < n; i++) {
+            sourceEnds[size + i] = batch.sourceEnds[fromIndex + i] + shift;
+            targetEnds[size + i] = batch.targetEnds[fromIndex + i] + shift;
+        }
+
+        // Subtype codes are local to each batch, so translate them through this batch's dictionary; via a table of
+        // the translated codes, unless the range is too short for that to pay off
+        if (n <= batch.subTypeDictionary.size()) {
+            for (int i = 0; i < n; i++)
+                subTypes[size + i] = subTypeCode(batch.subTypeDictionary.get(batch.subTypes[fromIndex + i]));
+        } else {
+            final int[] codeMap = new int[batch.subTypeDictionary.size()];
+            Arrays.fill(codeMap, -1);
+            for (int i = 0; i < n; i++) {
+                final int code = batch.subTypes[fromIndex + i];
+                if (codeMap[code] == -1)
+                    codeMap[code] = subTypeCode(batch.subTypeDictionary.get(code));
+                subTypes[size + i] = codeMap[code];
+            }
+        }
+
+        if (batch.counts != null || counts != null)
+            for (int i = 0; i < n; i++)
+                setCount(size + i, batch.counts == null ? 1 : batch.counts[fromIndex + i]);
+
+        size += n;
+        charCount += charEnd - charStart;
+    }
+
+    /**
+     * Remove every alias from the batch, keeping the storage allocated for reuse.
+     */
+    public void clear() {
+        size = 0;
+        charCount = 0;
+        counts = null;
+        subTypeDictionary.clear();
+        subTypeCodes.clear();
+    }
+
+    /**
+     * Pass every alias in this batch to the given handler, in order; as a whole batch if the handler supports them,
+     * otherwise one at a time.
+     *
+     * @param handler handler to receive the aliases
+     */
+    public void forwardTo(AliasHandler handler) {
+        checkNotNull(handler, "handler");
+        if (handler instanceof BatchAliasHandler) {
+            ((BatchAliasHandler) handler).handleAll(this);
+        } else {
+            for (int i = 0; i < size; i++)
+                handler.handle(get(i));
+        }
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder builder = new StringBuilder("AliasBatch[");
+        for (int i = 0; i < size; i++) {
+            if (i > 0)
+                builder.append(", ");
+            builder.append(get(i));
+        }
+        return builder.append(']').toString();
+    }
+
+    private int subTypeCode(String subType) {
+        final Integer code = subTypeCodes.get(subType);
+        if (code != null)
+            return code;
+        final int newCode = subTypeDictionary.size();
+        subTypeDictionary.add(subType);
+        subTypeCodes.put(subType, newCode);
+        return newCode;
+    }
+
+    private void setCount(int index, long count) {
+        if (counts == null) {
+            if (count == 1)
+                return;
+            counts = new long[types.length];
+            Arrays.fill(counts, 0, index, 1);
+        }
+        counts[index] = count;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > types.length) {
+            final int newCapacity = Math.max(capacity, 2 * types.length);
+            types = Arrays.copyOf(types, newCapacity);
+            subTypes = Arrays.copyOf(subTypes, newCapacity);
+            sourceEnds = Arrays.copyOf(sourceEnds, newCapacity);
+            targetEnds = Arrays.copyOf(targetEnds, newCapacity);
+            if (counts != null)
+                counts = Arrays.copyOf(counts, newCapacity);
+        }
+    }
+
+    private void ensureCharCapacity(int capacity) {
+        if (capacity > chars.length)
+            chars = Arrays.copyOf(chars, Math.max(capacity, 2 * chars.length));
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("index " + index + " is not less than size " + size);
+    }
+
+    /**
+     * Reads the aliases of a batch in order, without allocating. The text of the current alias is read directly from
+     * the shared character array of the batch ({@link #getChars()}), between the given offsets. A cursor is only valid
+     * until the batch is next modified, but can then be {@link #reset()} to read the batch again.
+     */
+    public final class Cursor {
+
+        private int index = -1;
+
+        private Cursor() {
+        }
+
+        /**
+         * Move back to before the first alias of the batch.
+         */
+        public void reset() {
+            index = -1;
+        }
+
+        /**
+         * @return batch read by this cursor
+         */
+        public AliasBatch getBatch() {
+            return AliasBatch.this;
+        }
+
+        /**
+         * Move to the next alias.
+         *
+         * @return true if there is a next alias, false if the cursor has moved past the end of the batch
+         */
+        public boolean next() {
+            if (index < size)
+                index++;
+            return index < size;
+        }
+
+        /**
+         * @return position of the current alias in the batch
+         */
+        public int getIndex() {
+            return index;
+        }
+
+        public AliasType getType() {
+            checkIndex(index);
+            return TYPES[types[index]];
+        }
+
+        public String getSubType() {
+            checkIndex(index);
+            return subTypeDictionary.get(subTypes[index]);
+        }
+
+        public long getCount() {
+            checkIndex(index);
+            return counts == null ? 1 : counts[index];
+        }
+
+        /**
+         * @return characters of the batch, holding the text of every alias
+         */
+        public char[] getChars() {
+            return chars;
+        }
+
+        public int getSourceStart() {
+            checkIndex(index);
+            return index == 0 ? 0 : targetEnds[index - 1];
+        }
+
+        public int getSourceEnd() {
+            checkIndex(index);
+            return sourceEnds[index];
+        }
+
+        public int getTargetStart() {
+            return getSourceEnd();
+        }
+
+        public int getTargetEnd() {
+            checkIndex(index);
+            return targetEnds[index];
+        }
+
+        /**
+         * @return a copy of the current alias
+         */
+        public Alias toAlias() {
+            return get(index);
+        }
+    }
+}
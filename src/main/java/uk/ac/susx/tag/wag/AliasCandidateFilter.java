@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2010-2013, University of Sussex
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the University of Sussex nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.ac.susx.tag.wag;
+
+import javax.annotation.concurrent.Immutable;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Rejects alias sources and targets that are empty, or too long to be useful, in a single pass over the text and
+ * without allocation.
+ *
+ * @author Hamish Morgan
+ */
+@Immutable
+final class AliasCandidateFilter {
+
+    private final int maxChars;
+
+    private final int maxWords;
+
+    /**
+     * @param maxChars maximum number of characters in an alias source or target
+     * @param maxWords maximum number of white space separated words in an alias source or target
+     * @throws IllegalArgumentException if either maximum is less than 1
+     */
+    AliasCandidateFilter(int maxChars, int maxWords) {
+        checkArgument(maxChars >= 1, "maxChars < 1");
+        checkArgument(maxWords >= 1, "maxWords < 1");
+        this.maxChars = maxChars;
+        this.maxWords = maxWords;
+    }
+
+    /**
+     * Whether the given text is acceptable as the source or target of an alias; i.e it is not empty, and not longer
+     * than the maximum number of characters or words.
+     *
+     * @param text alias source or target, with leading and trailing white space removed
+     * @return true if the text is acceptable
+     */
+    boolean accept(final String text) {
+        final int length = text.length();
+        if (length == 0 || length > maxChars)
+            return false;
+
+        // Words are separated by runs of white space (as matched by \s), and the text has been trimmed
+        int words = 1;
+        boolean previousSpace = false;
+        for (int i = 0; i < length; i++) {
+            final boolean space = isWhitespace(text.charAt(i));
+            if (space && !previousSpace && ++words > maxWords)
+                return false;
+            previousSpace = space;
+        }
+        return true;
+    }
+
+    private static boolean isWhitespace(final char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    @Override
+    public String toString() {
+        return "AliasCandidateFilter{maxChars=" + maxChars + ", maxWords=" + maxWords + '}';
+    }
+}
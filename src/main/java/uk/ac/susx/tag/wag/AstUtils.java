@@ -113,7 +113,16 @@ public class AstUtils {
      * @return
      */
     public static String getLinkSurface(AstNode node) {
-        final String text = getText(node);
+        return getLinkSurface(getText(node));
+    }
+
+    /**
+     * Get the surface form from the given text, which is assumed to be a link.
+     *
+     * @param text link text
+     * @return surface form of the link
+     */
+    public static String getLinkSurface(String text) {
         final int i = text.lastIndexOf(LINK_DELIMITER);
         return i == -1 ? text : text.substring(i + 1);
     }
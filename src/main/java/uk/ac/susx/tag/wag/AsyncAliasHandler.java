@@ -0,0 +1,279 @@
+/*
+ * Copyright (c) 2010-2013, University of Sussex
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the University of Sussex nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.ac.susx.tag.wag;
+
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * An <tt>AliasHandler</tt> which forwards aliases to its delegate on a dedicated writer thread, so that a slow
+ * delegate (such as a compressed output file) does not stall the thread producing aliases.
+ * <p/>
+ * Aliases are collected into batches of a fixed size, which are passed to the writer thread through a bounded queue,
+ * and on to the delegate as whole batches (see {@link BatchAliasHandler}.)
+ * A fixed number of batches are allocated up front and recycled once written; when they are all waiting to be written
+ * the producer blocks until the writer catches up.
+ * <p/>
+ * If the delegate fails, the writer thread keeps draining (and discarding) batches so the producer never blocks
+ * forever. The failure is re-thrown from the next call to {@link #handle(Alias)}, {@link #flush()}, or
+ * {@link #close()}. Calls to this handler must not be concurrent, though they may come from different threads.
+ *
+ * @author Hamish Morgan
+ */
+@NotThreadSafe
+public class AsyncAliasHandler extends ForwardingAliasHandler {
+
+    public static final int DEFAULT_BATCH_SIZE = 4096;
+
+    public static final int DEFAULT_MAX_PENDING_BATCHES = 16;
+
+    /**
+     * Marker placed on the queue to ask the writer to flush the delegate.
+     */
+    private final AliasBatch flushMarker = new AliasBatch(0);
+
+    /**
+     * Marker placed on the queue to indicate that no more batches will follow.
+     */
+    private final AliasBatch endMarker = new AliasBatch(0);
+
+    private final int batchSize;
+
+    /**
+     * Batches waiting to be written, in order.
+     */
+    private final BlockingQueue<AliasBatch> pending;
+
+    /**
+     * Written batches, cleared and ready to be filled again.
+     */
+    private final BlockingQueue<AliasBatch> free;
+
+    /**
+     * Released by the writer each time it has handled a flush marker.
+     */
+    private final Semaphore flushed = new Semaphore(0);
+
+    private final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+
+    private final ExecutorService executor;
+
+    private AliasBatch current;
+
+    private boolean closed = false;
+
+    /**
+     * @param delegate           handler that aliases are forwarded to, on the writer thread
+     * @param batchSize          number of aliases passed to the writer at a time
+     * @param maxPendingBatches  number of batches that may be waiting to be written before the producer blocks
+     * @throws IllegalArgumentException if batchSize or maxPendingBatches is less than 1
+     */
+    public AsyncAliasHandler(AliasHandler delegate, int batchSize, int maxPendingBatches) {
+        super(delegate);
+        checkArgument(batchSize >= 1, "batchSize < 1");
+        checkArgument(maxPendingBatches >= 1, "maxPendingBatches < 1");
+        this.batchSize = batchSize;
+
+        // One batch more than may be pending is being filled, and either queue may briefly hold every batch. The
+        // markers are not batches, so leave room for them too.
+        pending = new ArrayBlockingQueue<AliasBatch>(maxPendingBatches + 3);
+        free = new ArrayBlockingQueue<AliasBatch>(maxPendingBatches + 1);
+        for (int i = 0; i < maxPendingBatches; i++)
+            free.add(new AliasBatch(batchSize));
+        current = new AliasBatch(batchSize);
+
+        executor = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+                .setNameFormat("wag-writer-%d")
+                .setDaemon(true)
+                .build());
+        executor.execute(new BatchWriter());
+    }
+
+    public AsyncAliasHandler(AliasHandler delegate) {
+        this(delegate, DEFAULT_BATCH_SIZE, DEFAULT_MAX_PENDING_BATCHES);
+    }
+
+    @Override
+    public void handle(Alias alias) {
+        checkNotNull(alias, "alias");
+        checkWritable();
+        current.add(alias);
+        if (current.size() >= batchSize)
+            submitUnchecked();
+    }
+
+    @Override
+    public void handleAll(AliasBatch batch) {
+        checkNotNull(batch, "batch");
+        checkWritable();
+        int i = 0;
+        while (i < batch.size()) {
+            final int n = Math.min(batch.size() - i, batchSize - current.size());
+            current.addAll(batch, i, i + n);
+            i += n;
+            if (current.size() >= batchSize)
+                submitUnchecked();
+        }
+    }
+
+    /**
+     * Wait until every alias handled so far has been written, then flush the delegate.
+     */
+    @Override
+    public void flush() throws IOException {
+        if (closed)
+            throw new IllegalStateException("Handler has been closed.");
+        submit();
+        try {
+            pending.put(flushMarker);
+            flushed.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the writer to flush.");
+        }
+        checkFailure();
+    }
+
+    /**
+     * Wait until every alias handled so far has been written, then close the delegate.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed)
+            return;
+        closed = true;
+        try {
+            submit();
+            pending.put(endMarker);
+            executor.shutdown();
+            executor.awaitTermination(Long.MAX_VALUE, NANOSECONDS);
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the writer to finish.");
+        } finally {
+            try {
+                super.close();
+            } catch (IOException e) {
+                failure.compareAndSet(null, e);
+            }
+        }
+        checkFailure();
+    }
+
+    /**
+     * Pass the current batch to the writer, if it is not empty, and take a free batch to fill next.
+     */
+    private void submit() throws InterruptedIOException {
+        if (current.isEmpty())
+            return;
+        try {
+            pending.put(current);
+            current = free.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the writer.");
+        }
+    }
+
+    private void submitUnchecked() {
+        try {
+            submit();
+        } catch (InterruptedIOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void checkWritable() {
+        if (closed)
+            throw new IllegalStateException("Handler has been closed.");
+        final Throwable t = failure.get();
+        if (t != null)
+            throw new RuntimeException("Asynchronous alias writer failed.", t);
+    }
+
+    private void checkFailure() throws IOException {
+        final Throwable t = failure.get();
+        if (t != null) {
+            Throwables.propagateIfInstanceOf(t, IOException.class);
+            throw new IOException("Asynchronous alias writer failed.", t);
+        }
+    }
+
+    private final class BatchWriter implements Runnable {
+
+        @Override
+        public void run() {
+            try {
+                AliasBatch batch;
+                while ((batch = pending.take()) != endMarker) {
+                    // After a failure keep draining the queue, and recycling batches, so the producer never blocks
+                    // forever
+                    if (batch == flushMarker) {
+                        try {
+                            if (failure.get() == null)
+                                AsyncAliasHandler.super.flush();
+                        } catch (Throwable t) {
+                            failure.compareAndSet(null, t);
+                        } finally {
+                            flushed.release();
+                        }
+                    } else {
+                        try {
+                            if (failure.get() == null)
+                                forwardAll(batch);
+                        } catch (Throwable t) {
+                            failure.compareAndSet(null, t);
+                        }
+                        batch.clear();
+                        free.add(batch);
+                    }
+                }
+            } catch (InterruptedException e) {
+                failure.compareAndSet(null, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,622 @@
+/*
+ * Copyright (c) 2010-2013, University of Sussex
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the University of Sussex nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.ac.susx.tag.wag;
+
+import com.google.common.collect.Lists;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Closer;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * An <tt>AliasHandler</tt> which drops every alias that it has already forwarded, so each distinct alias is forwarded
+ * exactly once, in the order in which it was first seen.
+ * <p/>
+ * Aliases are identified by a 128 bit hash of their type, sub-type, source and target, held in a compact
+ * open-addressing table. When the table exceeds the memory budget, it's hashes are sorted and spilled to a new run
+ * file on disk, and the table is emptied. From then on aliases that are not in the table may have been seen before a
+ * spill, so they are held back in a temporary file. When the handler is flushed or closed, the runs are k-way merged,
+ * which finds the hashes that are also in an earlier run, and the other held back aliases are forwarded in the order
+ * they arrived.
+ * <p/>
+ * Each spill only writes it's own run. As in {@link ExternalAliasSorter}, the merge reads at most mergeWidth runs at
+ * once: each group of runs is merged along with a run of all the hashes before them, which the merge replaces.
+ *
+ * @author Hamish Morgan
+ */
+@NotThreadSafe
+public class DeduplicatingAliasHandler extends ForwardingAliasHandler {
+
+    public static final long DEFAULT_MEMORY_BUDGET = 256L * 1024 * 1024;
+
+    public static final int DEFAULT_MERGE_WIDTH = ExternalAliasSorter.DEFAULT_MERGE_WIDTH;
+
+    private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+
+    private static final int MIN_TABLE_SLOTS = 16;
+
+    /**
+     * Directory in which run and held back alias files are created.
+     */
+    private final File tempDirectory;
+
+    /**
+     * Maximum number of runs that are read at once.
+     */
+    private final int mergeWidth;
+
+    /**
+     * Hashes in the table, each stored as two consecutive longs. The all zero hash marks an empty slot.
+     */
+    private final long[] table;
+
+    private final int slotMask;
+
+    /**
+     * Maximum number of hashes in the table before a spill.
+     */
+    private final int maxTableSize;
+
+    private int tableSize = 0;
+
+    /**
+     * Hash of the most recently hashed alias.
+     */
+    private long hashHi, hashLo;
+
+    /**
+     * Files holding the sorted hashes of each spill, in order. The aliases of the first run have all been forwarded;
+     * those of each later run were held back while their hashes were in the table.
+     */
+    private final List<File> runFiles = Lists.newArrayList();
+
+    /**
+     * Number of hashes in each run file.
+     */
+    private final List<Long> runSizes = Lists.newArrayList();
+
+    /**
+     * Aliases that have been held back, in the order they arrived (or null if there are none.)
+     */
+    private File heldBackFile = null;
+
+    private DataOutputStream heldBackOut = null;
+
+    /**
+     * Reusable batch of the distinct aliases, when a batch is only partly distinct.
+     */
+    private final AliasBatch distinct = new AliasBatch();
+
+    /**
+     * Cursor of the last batch handled, kept for reuse.
+     */
+    private AliasBatch.Cursor cursor = null;
+
+    /**
+     * Construct a new de-duplicating handler, which spills to the default temporary directory.
+     *
+     * @param delegate     handler that distinct aliases are forwarded to
+     * @param memoryBudget approximate maximum number of bytes to hold in memory
+     * @throws IllegalArgumentException if memoryBudget is not positive
+     */
+    public DeduplicatingAliasHandler(AliasHandler delegate, long memoryBudget) {
+        this(delegate, memoryBudget, new File(System.getProperty("java.io.tmpdir")));
+    }
+
+    /**
+     * @param delegate      handler that distinct aliases are forwarded to
+     * @param memoryBudget  approximate maximum number of bytes to hold in memory
+     * @param tempDirectory directory in which to create temporary files
+     * @throws IllegalArgumentException if memoryBudget is not positive
+     */
+    public DeduplicatingAliasHandler(AliasHandler delegate, long memoryBudget, File tempDirectory) {
+        this(delegate, memoryBudget, DEFAULT_MERGE_WIDTH, tempDirectory);
+    }
+
+    /**
+     * @param delegate      handler that distinct aliases are forwarded to
+     * @param memoryBudget  approximate maximum number of bytes to hold in memory
+     * @param mergeWidth    maximum number of runs that are merged at once
+     * @param tempDirectory directory in which to create temporary files
+     * @throws IllegalArgumentException if memoryBudget is not positive, or mergeWidth is less than 2
+     */
+    public DeduplicatingAliasHandler(AliasHandler delegate, long memoryBudget, int mergeWidth, File tempDirectory) {
+        super(delegate);
+        checkArgument(memoryBudget > 0, "memoryBudget <= 0");
+        checkArgument(mergeWidth >= 2, "mergeWidth < 2");
+        this.tempDirectory = checkNotNull(tempDirectory, "tempDirectory");
+        this.mergeWidth = mergeWidth;
+
+        // Each slot takes 16 bytes, and the table is at most half full
+        final long budgetSlots = Math.min(memoryBudget / 16, 1 << 29);
+        final int slots = Math.max(MIN_TABLE_SLOTS, Integer.highestOneBit((int) budgetSlots));
+        this.table = new long[2 * slots];
+        this.slotMask = slots - 1;
+        this.maxTableSize = slots / 2;
+    }
+
+    @Override
+    public void handle(Alias alias) {
+        checkNotNull(alias, "alias");
+
+        hash(alias);
+        if (!tableAdd(hashHi, hashLo))
+            return;
+
+        try {
+            if (runFiles.isEmpty()) {
+                super.handle(alias);
+            } else {
+                holdBack(alias);
+            }
+            if (tableSize >= maxTableSize)
+                spill();
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to spill alias hashes to disk.", e);
+        }
+    }
+
+    @Override
+    public void handleAll(AliasBatch batch) {
+        checkNotNull(batch, "batch");
+        try {
+            // Copy each run of distinct aliases that can be forwarded now, forwarding the batch untouched if they all
+            // can be. Aliases are hashed straight from the batch; only those held back are built as objects.
+            cursor = batch.cursor(cursor);
+            int runStart = 0;
+            while (cursor.next()) {
+                final int index = cursor.getIndex();
+                hash(cursor);
+                if (!tableAdd(hashHi, hashLo)) {
+                    distinct.addAll(batch, runStart, index);
+                    runStart = index + 1;
+                    continue;
+                }
+                if (!runFiles.isEmpty()) {
+                    distinct.addAll(batch, runStart, index);
+                    runStart = index + 1;
+                    holdBack(cursor.toAlias());
+                }
+                if (tableSize >= maxTableSize)
+                    spill();
+            }
+            if (runStart == 0 && distinct.isEmpty()) {
+                forwardAll(batch);
+            } else {
+                distinct.addAll(batch, runStart, batch.size());
+                if (!distinct.isEmpty())
+                    forwardAll(distinct);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to spill alias hashes to disk.", e);
+        } finally {
+            distinct.clear();
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (!runFiles.isEmpty()) {
+            // Every alias in the table has been held back
+            if (tableSize > 0)
+                spill();
+            if (runFiles.size() > 1)
+                resolve();
+        }
+        super.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            try {
+                if (heldBackOut != null)
+                    heldBackOut.close();
+                delete(heldBackFile);
+                for (File runFile : runFiles)
+                    delete(runFile);
+            } finally {
+                heldBackOut = null;
+                heldBackFile = null;
+                runFiles.clear();
+                runSizes.clear();
+                super.close();
+            }
+        }
+    }
+
+    private void hash(final Alias alias) {
+        final Hasher hasher = HASH_FUNCTION.newHasher()
+                .putInt(alias.getType().ordinal())
+                .putInt(alias.getSubType().length()).putString(alias.getSubType());
+        putText(hasher, alias.getSource());
+        putText(hasher, alias.getTarget());
+        setHash(hasher);
+    }
+
+    /**
+     * Hash the current alias of the cursor, from the characters of the batch; with the same result as hashing it as
+     * an <tt>Alias</tt>.
+     */
+    private void hash(final AliasBatch.Cursor cursor) {
+        final Hasher hasher = HASH_FUNCTION.newHasher()
+                .putInt(cursor.getType().ordinal())
+                .putInt(cursor.getSubType().length()).putString(cursor.getSubType());
+        putText(hasher, cursor.getChars(), cursor.getSourceStart(), cursor.getSourceEnd());
+        putText(hasher, cursor.getChars(), cursor.getTargetStart(), cursor.getTargetEnd());
+        setHash(hasher);
+    }
+
+    private static void putText(final Hasher hasher, final String text) {
+        hasher.putInt(text.length());
+        for (int i = 0; i < text.length(); i++)
+            hasher.putChar(text.charAt(i));
+    }
+
+    private static void putText(final Hasher hasher, final char[] chars, final int start, final int end) {
+        hasher.putInt(end - start);
+        for (int i = start; i < end; i++)
+            hasher.putChar(chars[i]);
+    }
+
+    private void setHash(final Hasher hasher) {
+        final ByteBuffer hash = ByteBuffer.wrap(hasher.hash().asBytes()).order(ByteOrder.LITTLE_ENDIAN);
+        hashHi = hash.getLong(0);
+        hashLo = hash.getLong(8);
+        // Zero is reserved for empty slots
+        if (hashHi == 0 && hashLo == 0)
+            hashLo = 1;
+    }
+
+    /**
+     * Add the given hash to the table.
+     *
+     * @return true if the hash was added, false if it was already present
+     */
+    private boolean tableAdd(final long hi, final long lo) {
+        int slot = (int) (hi ^ (hi >>> 32)) & slotMask;
+        while (true) {
+            final long slotHi = table[2 * slot];
+            final long slotLo = table[2 * slot + 1];
+            if (slotHi == 0 && slotLo == 0) {
+                table[2 * slot] = hi;
+                table[2 * slot + 1] = lo;
+                ++tableSize;
+                return true;
+            }
+            if (slotHi == hi && slotLo == lo)
+                return false;
+            slot = (slot + 1) & slotMask;
+        }
+    }
+
+    private void holdBack(final Alias alias) throws IOException {
+        if (heldBackOut == null) {
+            heldBackFile = createTempFile(".aliases");
+            heldBackOut = newOutput(heldBackFile);
+        }
+        AliasRecords.write(heldBackOut, alias);
+    }
+
+    /**
+     * Sort the hashes in the table and write them to a new run file, then empty the table.
+     */
+    private void spill() throws IOException {
+        // Sort the table hashes in place, at the front of the table
+        int n = 0;
+        for (int slot = 0; slot <= slotMask; slot++) {
+            if (table[2 * slot] != 0 || table[2 * slot + 1] != 0) {
+                table[2 * n] = table[2 * slot];
+                table[2 * n + 1] = table[2 * slot + 1];
+                ++n;
+            }
+        }
+        sort(table, 0, n - 1);
+
+        final File runFile = createTempFile(".run");
+        runFiles.add(runFile);
+        runSizes.add((long) n);
+        final Closer closer = Closer.create();
+        try {
+            final DataOutputStream out = closer.register(newOutput(runFile));
+            for (int i = 0; i < 2 * n; i++)
+                out.writeLong(table[i]);
+            out.flush();
+        } catch (Throwable t) {
+            throw closer.rethrow(t, IOException.class);
+        } finally {
+            closer.close();
+        }
+
+        Arrays.fill(table, 0L);
+        tableSize = 0;
+    }
+
+    /**
+     * Forward the held back aliases that are not in an earlier run than their own, in the order they arrived, leaving
+     * a single run of all the hashes.
+     */
+    private void resolve() throws IOException {
+        heldBackOut.close();
+        heldBackOut = null;
+        final Closer closer = Closer.create();
+        try {
+            final DataInputStream heldBack = closer.register(newInput(heldBackFile));
+            while (runFiles.size() > 1) {
+                // Merge the first run, of the hashes of every alias that has been forwarded, with the runs after it
+                final int n = Math.min(mergeWidth, runFiles.size());
+                final List<File> inputs = Lists.newArrayList(runFiles.subList(0, n));
+                final List<Long> inputSizes = Lists.newArrayList(runSizes.subList(0, n));
+                final BitSet[] duplicates = new BitSet[n];
+                final File merged = createTempFile(".run");
+                final long mergedSize = mergeRuns(inputs, inputSizes, merged, duplicates);
+
+                // The held back aliases of each run follow on from those of the run before it
+                for (int i = 1; i < n; i++)
+                    forwardHeldBack(heldBack, inputs.get(i), (int) (long) inputSizes.get(i), duplicates[i]);
+
+                runFiles.subList(0, n).clear();
+                runSizes.subList(0, n).clear();
+                runFiles.add(0, merged);
+                runSizes.add(0, mergedSize);
+                for (File input : inputs)
+                    delete(input);
+            }
+        } catch (Throwable t) {
+            throw closer.rethrow(t, IOException.class);
+        } finally {
+            closer.close();
+        }
+        delete(heldBackFile);
+        heldBackFile = null;
+    }
+
+    /**
+     * Merge the given runs into a single run of the distinct hashes, marking the position of each hash that is also in
+     * an earlier run.
+     *
+     * @param duplicates receives, for each run but the first, the positions of it's duplicate hashes
+     * @return number of hashes in the merged run
+     */
+    private static long mergeRuns(final List<File> inputs, final List<Long> inputSizes, final File output,
+                                  final BitSet[] duplicates) throws IOException {
+        final Closer closer = Closer.create();
+        try {
+            final DataOutputStream out = closer.register(newOutput(output));
+            final PriorityQueue<RunReader> queue = new PriorityQueue<RunReader>(inputs.size());
+            for (int i = 0; i < inputs.size(); i++) {
+                duplicates[i] = new BitSet();
+                final RunReader reader = new RunReader(i, closer.register(newInput(inputs.get(i))), inputSizes.get(i));
+                if (reader.advance())
+                    queue.add(reader);
+            }
+
+            long size = 0;
+            while (!queue.isEmpty()) {
+                final RunReader first = queue.poll();
+                final long hi = first.hi;
+                final long lo = first.lo;
+                out.writeLong(hi);
+                out.writeLong(lo);
+                ++size;
+                if (first.advance())
+                    queue.add(first);
+                // Each run holds a hash at most once, and equal hashes are polled earliest run first
+                while (!queue.isEmpty() && queue.peek().hi == hi && queue.peek().lo == lo) {
+                    final RunReader reader = queue.poll();
+                    duplicates[reader.index].set((int) reader.position);
+                    if (reader.advance())
+                        queue.add(reader);
+                }
+            }
+            out.flush();
+            return size;
+        } catch (Throwable t) {
+            throw closer.rethrow(t, IOException.class);
+        } finally {
+            closer.close();
+        }
+    }
+
+    /**
+     * Forward the next held back aliases; those of the given run, other than the duplicates. The run holds the hashes
+     * of exactly the aliases that were held back while their hashes were in the table, so each can be found by binary
+     * search.
+     */
+    private void forwardHeldBack(final DataInputStream heldBack, final File runFile, final int size,
+                                 final BitSet duplicates) throws IOException {
+        final Closer closer = Closer.create();
+        try {
+            final DataInputStream in = closer.register(newInput(runFile));
+            for (int i = 0; i < 2 * size; i++)
+                table[i] = in.readLong();
+        } catch (Throwable t) {
+            throw closer.rethrow(t, IOException.class);
+        } finally {
+            closer.close();
+        }
+
+        for (int h = 0; h < size; h++) {
+            final Alias alias = AliasRecords.read(heldBack);
+            hash(alias);
+            if (!duplicates.get(search(table, size, hashHi, hashLo)))
+                super.handle(alias);
+        }
+        Arrays.fill(table, 0, 2 * size, 0L);
+    }
+
+    private File createTempFile(final String suffix) throws IOException {
+        final File file = File.createTempFile("wag-dedup-", suffix, tempDirectory);
+        file.deleteOnExit();
+        return file;
+    }
+
+    private static DataOutputStream newOutput(final File file) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+    }
+
+    private static DataInputStream newInput(final File file) throws IOException {
+        return new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+    }
+
+    private static void delete(final File file) throws IOException {
+        if (file != null && !file.delete() && file.exists())
+            throw new IOException("Failed to delete temporary file: " + file);
+    }
+
+    private static int compare(final long hi1, final long lo1, final long hi2, final long lo2) {
+        return hi1 < hi2 ? -1 : hi1 > hi2 ? 1 : lo1 < lo2 ? -1 : lo1 > lo2 ? 1 : 0;
+    }
+
+    /**
+     * Find the index of the given hash, in the first n sorted (and present) hashes.
+     */
+    private static int search(final long[] hashes, final int n, final long hi, final long lo) {
+        int low = 0;
+        int high = n - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            final int cmp = compare(hashes[2 * mid], hashes[2 * mid + 1], hi, lo);
+            if (cmp < 0)
+                low = mid + 1;
+            else if (cmp > 0)
+                high = mid - 1;
+            else
+                return mid;
+        }
+        throw new AssertionError("hash not found");
+    }
+
+    /**
+     * Sort the hashes with indices from low to high (inclusive.) The hashes are uniformly distributed and distinct, so
+     * a simple quick-sort performs well.
+     */
+    private static void sort(final long[] hashes, int low, int high) {
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            final long pivotHi = hashes[2 * mid];
+            final long pivotLo = hashes[2 * mid + 1];
+            int i = low;
+            int j = high;
+            while (i <= j) {
+                while (compare(hashes[2 * i], hashes[2 * i + 1], pivotHi, pivotLo) < 0)
+                    ++i;
+                while (compare(hashes[2 * j], hashes[2 * j + 1], pivotHi, pivotLo) > 0)
+                    --j;
+                if (i <= j) {
+                    swap(hashes, i, j);
+                    ++i;
+                    --j;
+                }
+            }
+            // Recurse into the smaller part, and loop on the larger, to bound the stack depth
+            if (j - low < high - i) {
+                sort(hashes, low, j);
+                low = i;
+            } else {
+                sort(hashes, i, high);
+                high = j;
+            }
+        }
+    }
+
+    private static void swap(final long[] hashes, final int i, final int j) {
+        final long hi = hashes[2 * i];
+        final long lo = hashes[2 * i + 1];
+        hashes[2 * i] = hashes[2 * j];
+        hashes[2 * i + 1] = hashes[2 * j + 1];
+        hashes[2 * j] = hi;
+        hashes[2 * j + 1] = lo;
+    }
+
+    /**
+     * Reads the hashes of a run file in order.
+     */
+    private static final class RunReader implements Comparable<RunReader> {
+
+        /**
+         * Position of the run in the merge; earlier runs come first.
+         */
+        private final int index;
+
+        private final DataInputStream in;
+
+        private long remaining;
+
+        /**
+         * Position of the current hash in the run.
+         */
+        private long position = -1;
+
+        private long hi, lo;
+
+        RunReader(final int index, final DataInputStream in, final long size) {
+            this.index = index;
+            this.in = in;
+            this.remaining = size;
+        }
+
+        /**
+         * Read the next hash.
+         *
+         * @return true if there was a next hash, false if the run is exhausted
+         */
+        boolean advance() throws IOException {
+            if (remaining == 0)
+                return false;
+            hi = in.readLong();
+            lo = in.readLong();
+            --remaining;
+            ++position;
+            return true;
+        }
+
+        @Override
+        public int compareTo(final RunReader that) {
+            final int cmp = compare(hi, lo, that.hi, that.lo);
+            return cmp != 0 ? cmp : index < that.index ? -1 : index > that.index ? 1 : 0;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2010-2013, University of Sussex
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the University of Sussex nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.ac.susx.tag.wag;
+
+import org.sweble.wikitext.lazy.preprocessor.Template;
+
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * Handles the templates that mark a page as a disambiguation page (e.g <tt>{{Disambiguation}}</tt>, and
+ * <tt>{{Hospital disambiguation}}</tt>.) The surface text of every link that precedes the template is produced as a
+ * {@link AliasType#DAB_TITLE} alias of the page title.
+ * <p/>
+ * TODO: Letter-NumberCombDisambig, mathdab, numberdis, schooldis, shipindex, mil-unit-dis
+ *
+ * @author Hamish Morgan
+ */
+@Immutable
+final class DisambiguationTemplateHandler implements TemplateHandler {
+
+    @Override
+    public void handle(AliasAstVisitor visitor, Template template, String name) {
+        visitor.checkTemplateArgs(0, 2, template);
+
+        for (String surface : visitor.getLinkSurfaces())
+            visitor.addPageTitleAlias(AliasType.DAB_TITLE, Alias.NO_SUBTYPE, visitor.getPageTitle(), surface);
+    }
+
+}
@@ -0,0 +1,270 @@
+/*
+ * Copyright (c) 2010-2013, University of Sussex
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the University of Sussex nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.ac.susx.tag.wag;
+
+import com.google.common.collect.Lists;
+import com.google.common.io.Closer;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.io.*;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Sorts aliases that do not fit in memory. The caller adds runs of aliases, each already sorted, which are written to
+ * temporary files; the runs are then k-way merged back into a single sorted sequence.
+ * <p/>
+ * The merge is stable: aliases that are equal according to the order are produced in the order their runs were added
+ * (and in their order within a run.) Optionally, equal aliases can instead be combined into one, with the sum of
+ * their counts.
+ *
+ * @author Hamish Morgan
+ */
+@NotThreadSafe
+final class ExternalAliasSorter {
+
+    static final int DEFAULT_MERGE_WIDTH = 64;
+
+    private final Comparator<Alias> order;
+
+    private final boolean countsSummed;
+
+    private final int mergeWidth;
+
+    private final File tempDirectory;
+
+    private final String tempPrefix;
+
+    /**
+     * Files holding sorted runs, in the order they were added.
+     */
+    private final List<File> runFiles = Lists.newArrayList();
+
+    /**
+     * @param order         order of the aliases within each run, and of the merged aliases
+     * @param countsSummed  true to combine aliases that are equal according to the order, summing their counts
+     * @param mergeWidth    maximum number of runs that are read at once; when there are more, groups of runs are
+     *                      first merged into intermediate runs
+     * @param tempDirectory directory in which to create run files
+     * @param tempPrefix    prefix of the run file names
+     * @throws IllegalArgumentException if mergeWidth is less than 2
+     */
+    ExternalAliasSorter(final Comparator<Alias> order, final boolean countsSummed, final int mergeWidth,
+                        final File tempDirectory, final String tempPrefix) {
+        checkArgument(mergeWidth >= 2, "mergeWidth < 2");
+        this.order = checkNotNull(order, "order");
+        this.countsSummed = countsSummed;
+        this.mergeWidth = mergeWidth;
+        this.tempDirectory = checkNotNull(tempDirectory, "tempDirectory");
+        this.tempPrefix = checkNotNull(tempPrefix, "tempPrefix");
+    }
+
+    boolean hasRuns() {
+        return !runFiles.isEmpty();
+    }
+
+    /**
+     * Write a run of aliases to disk.
+     *
+     * @param sorted aliases in order (which should already be combined, if counts are summed)
+     */
+    void addRun(final Iterable<Alias> sorted) throws IOException {
+        final File runFile = createRunFile();
+        runFiles.add(runFile);
+        writeRun(runFile, sorted);
+    }
+
+    /**
+     * Merge all the runs, passing the aliases to the output in order, and then delete the runs.
+     *
+     * @param output handler to receive the merged aliases
+     */
+    void merge(final AliasHandler output) throws IOException {
+        while (runFiles.size() > mergeWidth) {
+            // Merge the earliest runs, and put the result in their place, so the merge stays stable
+            final List<File> inputs = Lists.newArrayList(runFiles.subList(0, mergeWidth));
+            final File merged = createRunFile();
+            runFiles.add(0, merged);
+            final Closer closer = Closer.create();
+            try {
+                final DataOutputStream out = closer.register(newOutput(merged));
+                mergeRuns(inputs, new AliasHandler() {
+                    @Override
+                    public void handle(Alias alias) {
+                        try {
+                            out.writeBoolean(true);
+                            AliasRecords.write(out, alias);
+                        } catch (IOException e) {
+                            throw new RuntimeException(e);
+                        }
+                    }
+                });
+                out.writeBoolean(false);
+                out.flush();
+            } catch (Throwable t) {
+                throw closer.rethrow(t, IOException.class);
+            } finally {
+                closer.close();
+            }
+            for (File input : inputs) {
+                runFiles.remove(input);
+                delete(input);
+            }
+        }
+        mergeRuns(runFiles, output);
+        delete();
+    }
+
+    /**
+     * Delete any remaining run files.
+     */
+    void delete() throws IOException {
+        try {
+            for (File runFile : runFiles)
+                delete(runFile);
+        } finally {
+            runFiles.clear();
+        }
+    }
+
+    private File createRunFile() throws IOException {
+        final File runFile = File.createTempFile(tempPrefix, ".run", tempDirectory);
+        runFile.deleteOnExit();
+        return runFile;
+    }
+
+    private static DataOutputStream newOutput(final File file) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+    }
+
+    private static void delete(final File file) throws IOException {
+        if (!file.delete() && file.exists())
+            throw new IOException("Failed to delete run file: " + file);
+    }
+
+    private static void writeRun(final File runFile, final Iterable<Alias> aliases) throws IOException {
+        final Closer closer = Closer.create();
+        try {
+            final DataOutputStream out = closer.register(newOutput(runFile));
+            for (Alias alias : aliases) {
+                out.writeBoolean(true);
+                AliasRecords.write(out, alias);
+            }
+            out.writeBoolean(false);
+            out.flush();
+        } catch (Throwable t) {
+            throw closer.rethrow(t, IOException.class);
+        } finally {
+            closer.close();
+        }
+    }
+
+    /**
+     * Merge the given runs, passing the aliases to the output in order.
+     */
+    private void mergeRuns(final List<File> inputs, final AliasHandler output) throws IOException {
+        final Closer closer = Closer.create();
+        try {
+            final PriorityQueue<RunReader> queue = new PriorityQueue<RunReader>(Math.max(1, inputs.size()));
+            for (int i = 0; i < inputs.size(); i++) {
+                final RunReader reader = new RunReader(i, closer.register(new DataInputStream(
+                        new BufferedInputStream(new FileInputStream(inputs.get(i))))));
+                if (reader.advance())
+                    queue.add(reader);
+            }
+
+            while (!queue.isEmpty()) {
+                RunReader reader = queue.poll();
+                final Alias first = reader.current;
+                if (reader.advance())
+                    queue.add(reader);
+                if (!countsSummed) {
+                    output.handle(first);
+                    continue;
+                }
+                // Each run holds an alias at most once, so there is at most one more occurrence per run
+                long total = first.getCount();
+                while (!queue.isEmpty() && order.compare(queue.peek().current, first) == 0) {
+                    reader = queue.poll();
+                    total += reader.current.getCount();
+                    if (reader.advance())
+                        queue.add(reader);
+                }
+                output.handle(total == first.getCount() ? first
+                        : new Alias(first.getType(), first.getSubType(), first.getSource(), first.getTarget(), total));
+            }
+        } catch (Throwable t) {
+            throw closer.rethrow(t, IOException.class);
+        } finally {
+            closer.close();
+        }
+    }
+
+    /**
+     * Reads the aliases of a run file in order.
+     */
+    private final class RunReader implements Comparable<RunReader> {
+
+        /**
+         * Position of the run amongst those being merged, which breaks ties so the merge is stable.
+         */
+        private final int index;
+
+        private final DataInputStream in;
+
+        private Alias current = null;
+
+        RunReader(final int index, final DataInputStream in) {
+            this.index = index;
+            this.in = in;
+        }
+
+        /**
+         * Read the next alias into current.
+         *
+         * @return true if an alias was read, false if the run is exhausted
+         */
+        boolean advance() throws IOException {
+            current = in.readBoolean() ? AliasRecords.read(in) : null;
+            return current != null;
+        }
+
+        @Override
+        public int compareTo(final RunReader that) {
+            final int cmp = order.compare(this.current, that.current);
+            return cmp != 0 ? cmp : this.index < that.index ? -1 : this.index > that.index ? 1 : 0;
+        }
+    }
+}
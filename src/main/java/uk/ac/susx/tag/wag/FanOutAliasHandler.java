@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2010-2013, University of Sussex
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the University of Sussex nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.ac.susx.tag.wag;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Closer;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * An <tt>AliasHandler</tt> which passes every alias to each of a number of handlers, in turn, so that several outputs
+ * can be produced from a single pass over the input.
+ * <p/>
+ * Batches are passed to every handler as they are, so the handlers must not modify them. To stop one slow handler
+ * from holding back the others, wrap each in an {@link AsyncAliasHandler}.
+ *
+ * @author Hamish Morgan
+ */
+@NotThreadSafe
+public class FanOutAliasHandler implements BatchAliasHandler, Flushable, Closeable {
+
+    private final List<AliasHandler> handlers;
+
+    /**
+     * @param handlers handlers to receive every alias, in the order they are called
+     * @throws IllegalArgumentException if handlers is empty
+     */
+    public FanOutAliasHandler(List<? extends AliasHandler> handlers) {
+        checkNotNull(handlers, "handlers");
+        checkArgument(!handlers.isEmpty(), "handlers is empty");
+        this.handlers = ImmutableList.copyOf(handlers);
+    }
+
+    public List<AliasHandler> getHandlers() {
+        return handlers;
+    }
+
+    @Override
+    public void handle(Alias alias) {
+        checkNotNull(alias, "alias");
+        for (AliasHandler handler : handlers)
+            handler.handle(alias);
+    }
+
+    @Override
+    public void handleAll(AliasBatch batch) {
+        checkNotNull(batch, "batch");
+        for (AliasHandler handler : handlers)
+            batch.forwardTo(handler);
+    }
+
+    /**
+     * Flush every handler, even if some of them fail; the first failure is then thrown.
+     */
+    @Override
+    public void flush() throws IOException {
+        IOException failure = null;
+        for (AliasHandler handler : handlers) {
+            if (handler instanceof Flushable) {
+                try {
+                    ((Flushable) handler).flush();
+                } catch (IOException e) {
+                    if (failure == null)
+                        failure = e;
+                }
+            }
+        }
+        if (failure != null)
+            throw failure;
+    }
+
+    @Override
+    public void close() throws IOException {
+        final Closer closer = Closer.create();
+        for (AliasHandler handler : handlers)
+            if (handler instanceof Closeable)
+                closer.register((Closeable) handler);
+        closer.close();
+    }
+}
@@ -39,17 +39,25 @@ import static com.google.common.base.Preconditions.checkNotNull;
 /**
  * An abstract <tt>AliasHandler</tt> which simply forwards all calls to a given delegate.
  * <p/>
- * This class should be extended, overriding the {@link #handle(Alias)} method to do something useful.
+ * This class should be extended, overriding the {@link #handle(Alias)} method to do something useful. Batches are
+ * passed to {@link #handle(Alias)} one alias at a time, which builds an <tt>Alias</tt> for each, unless
+ * {@link #handleAll(AliasBatch)} is also overridden; handlers that can work on the columns of the batch directly
+ * should override it.
  *
  * @author Hamish Morgan &lt;hamish.morgan@sussex.ac.uk&gt;
  */
-public abstract class ForwardingAliasHandler implements AliasHandler, Flushable, Closeable {
+public abstract class ForwardingAliasHandler implements BatchAliasHandler, Flushable, Closeable {
 
     /**
      * Inner <tt>AliasHandler</tt> to which method invocations will be forwarded.
      */
     private final AliasHandler delegate;
 
+    /**
+     * Cursor of the last batch handled, kept for reuse.
+     */
+    private AliasBatch.Cursor cursor = null;
+
     /**
      * Protected constructor to be used by subclasses only.
      *
@@ -74,6 +82,23 @@ public abstract class ForwardingAliasHandler implements AliasHandler, Flushable,
         delegate.handle(checkNotNull(alias, "alias"));
     }
 
+    @Override
+    public void handleAll(AliasBatch batch) {
+        checkNotNull(batch, "batch");
+        cursor = batch.cursor(cursor);
+        while (cursor.next())
+            handle(cursor.toAlias());
+    }
+
+    /**
+     * Pass a whole batch of aliases to the delegate, as a batch if it supports them.
+     *
+     * @param batch aliases to forward
+     */
+    protected void forwardAll(AliasBatch batch) {
+        batch.forwardTo(delegate);
+    }
+
     @Override
     public void close() throws IOException {
         if (delegate instanceof Closeable)
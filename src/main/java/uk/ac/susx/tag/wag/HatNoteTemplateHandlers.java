@@ -0,0 +1,410 @@
+/*
+ * Copyright (c) 2010-2013, University of Sussex
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the University of Sussex nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.ac.susx.tag.wag;
+
+import de.fau.cs.osr.ptk.common.ast.NodeList;
+import org.sweble.wikitext.lazy.preprocessor.Template;
+
+import javax.annotation.concurrent.Immutable;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Handlers for the families of hat-note templates; short notes at the top of an article that point to other pages
+ * that the reader may have been looking for.
+ * <p/>
+ * Most hat-notes take arguments that alternate between descriptions and page links, so each family is handled by a
+ * single class, configured with range of arguments that are links. See
+ * <a href="http://en.wikipedia.org/wiki/Wikipedia:Hatnote">Wikipedia:Hatnote</a> for the full list of templates.
+ *
+ * @author Hamish Morgan
+ */
+final class HatNoteTemplateHandlers {
+
+    /**
+     * Argument index or count denoting all arguments.
+     */
+    static final int ALL_ARGS = Integer.MAX_VALUE;
+
+    private HatNoteTemplateHandlers() {
+    }
+
+    /**
+     * Base class for handlers that check the number of template arguments before handling it.
+     */
+    @Immutable
+    abstract static class ArgumentCheckingHandler implements TemplateHandler {
+
+        private final int minArgs;
+
+        private final int maxArgs;
+
+        ArgumentCheckingHandler(int minArgs, int maxArgs) {
+            checkArgument(minArgs >= 0, "minArgs < 0");
+            checkArgument(maxArgs >= minArgs, "maxArgs < minArgs");
+            this.minArgs = minArgs;
+            this.maxArgs = maxArgs;
+        }
+
+        @Override
+        public final void handle(AliasAstVisitor visitor, Template template, String name) {
+            visitor.checkTemplateArgs(minArgs, maxArgs, template);
+            handle(visitor, template.getArgs(), name);
+        }
+
+        abstract void handle(AliasAstVisitor visitor, NodeList args, String name);
+
+    }
+
+    /**
+     * Templates that are recognised, but from which nothing is extracted.
+     * <ul>
+     * <li>{@code {{Distinguish|PAGE1|PAGE2}} } &rarr; Not to be confused with PAGE1, or PAGE2.</li>
+     * </ul>
+     * Note: "Not to be confused with" implies other pages are substantively different and so should not be considered
+     * good aliases.
+     */
+    static final class Ignored extends ArgumentCheckingHandler {
+
+        Ignored(int minArgs, int maxArgs) {
+            super(minArgs, maxArgs);
+        }
+
+        @Override
+        void handle(AliasAstVisitor visitor, NodeList args, String name) {
+        }
+    }
+
+    /**
+     * Templates whose argument is free text, from which all links are extracted as aliases of the page title.
+     * <ul>
+     * <li>{@code {{Hatnote|For other senses of this term, see [[etc…]]}} }</li>
+     * <li>{@code {{Rellink|CUSTOM TEXT}} }</li>
+     * <li>{@code {{For2|OTHER TOPIC|CUSTOM TEXT}} }</li>
+     * </ul>
+     * TODO: Template contents do not appear to be parsed correctly by Sweble so links aren't retrieved.
+     */
+    static final class LinkText extends ArgumentCheckingHandler {
+
+        private final int textArg;
+
+        /**
+         * @param textArg index of the free text argument, or {@link #ALL_ARGS}
+         */
+        LinkText(int minArgs, int maxArgs, int textArg) {
+            super(minArgs, maxArgs);
+            this.textArg = textArg;
+        }
+
+        @Override
+        void handle(AliasAstVisitor visitor, NodeList args, String name) {
+            if (textArg == ALL_ARGS) {
+                visitor.parseAllLinks(AliasType.HAT_NOTE, name, args);
+            } else if (args.size() > textArg) {
+                visitor.parseAllLinks(AliasType.HAT_NOTE, name, args.get(textArg));
+            }
+        }
+    }
+
+    /**
+     * Templates that describe the usage on the current page, and link to pages for alternative usages. The page title
+     * is produced as an alias of each linked page.
+     * <ul>
+     * <li>{@code {{About|USE1|USE2|PAGE2|USE3|PAGE3}} } &rarr; This page is about USE1. For USE2, see PAGE2. For USE3,
+     * see PAGE3.</li>
+     * <li>{@code {{For|OTHER TOPIC|PAGE1|PAGE2}} } &rarr; For OTHER TOPIC, see PAGE1 and PAGE2.</li>
+     * <li>{@code {{Common name for|Otariid|eared seals, including the [[sea lions]]}} }</li>
+     * </ul>
+     * TODO: PAGE2#SUBSECTION{{!}}PAGE2TITLE isn't supported correctly (need to find an example)
+     */
+    static final class TitleToPages extends ArgumentCheckingHandler {
+
+        private final int firstPageArg;
+
+        private final int pageArgStep;
+
+        private final int endPageArg;
+
+        /**
+         * @param firstPageArg index of the first link argument
+         * @param pageArgStep  distance between link arguments (2 when they alternate with descriptions)
+         * @param endPageArg   index after the last link argument, or {@link #ALL_ARGS}
+         */
+        TitleToPages(int minArgs, int maxArgs, int firstPageArg, int pageArgStep, int endPageArg) {
+            super(minArgs, maxArgs);
+            checkArgument(pageArgStep > 0, "pageArgStep <= 0");
+            this.firstPageArg = firstPageArg;
+            this.pageArgStep = pageArgStep;
+            this.endPageArg = endPageArg;
+        }
+
+        @Override
+        void handle(AliasAstVisitor visitor, NodeList args, String name) {
+            final int end = Math.min(endPageArg, args.size());
+            for (int i = firstPageArg; i < end; i += pageArgStep) {
+                visitor.addPageTitleAlias(AliasType.HAT_NOTE, name,
+                        visitor.getPageTitle(), visitor.getLinkSurface(args.get(i)));
+            }
+        }
+    }
+
+    /**
+     * Templates that link to other pages which may be known by the same name as this one, or to pages that redirect
+     * here. Each linked page is produced as an alias of the page title.
+     * <ul>
+     * <li>{@code {{Other uses|PAGE1|PAGE2}} } &rarr; For other uses, see PAGE1 and PAGE2.</li>
+     * <li>{@code {{Other places3|PAGE}} } &rarr; For other places with the same name, see PAGE.</li>
+     * <li>{@code {{Redirect3|REDIRECT|TEXT}} } &rarr; "REDIRECT" redirects here. TEXT.</li>
+     * <li>{@code {{Redirect10|REDIRECT1|REDIRECT2|REDIRECT3}} } &rarr; "REDIRECT1", "REDIRECT2", and "REDIRECT3"
+     * redirect here. ...</li>
+     * </ul>
+     */
+    static final class PagesToTitle extends ArgumentCheckingHandler {
+
+        private final int firstPageArg;
+
+        private final int endPageArg;
+
+        /**
+         * @param firstPageArg index of the first link argument
+         * @param endPageArg   index after the last link argument, or {@link #ALL_ARGS}
+         */
+        PagesToTitle(int minArgs, int maxArgs, int firstPageArg, int endPageArg) {
+            super(minArgs, maxArgs);
+            this.firstPageArg = firstPageArg;
+            this.endPageArg = endPageArg;
+        }
+
+        @Override
+        void handle(AliasAstVisitor visitor, NodeList args, String name) {
+            final int end = Math.min(endPageArg, args.size());
+            for (int i = firstPageArg; i < end; i++) {
+                visitor.addPageTitleAlias(AliasType.HAT_NOTE, name,
+                        visitor.getLinkSurface(args.get(i)), visitor.getPageTitle());
+            }
+        }
+    }
+
+    /**
+     * Templates that list pages which redirect here, followed by pairs of alternative usages and links. The redirects
+     * are produced as aliases of the page title, and the page title as an alias of each linked page. If the final link
+     * is missing then it refers to the disambiguation page for the current article title.
+     * <ul>
+     * <li>{@code {{Redirect|REDIRECT|USE1|PAGE1|USE2|PAGE2}} } &rarr; "REDIRECT" redirects here. For USE1, see PAGE1.
+     * For USE2, see PAGE2.</li>
+     * <li>{@code {{Redirect2|REDIRECT1|REDIRECT2|USE|PAGE1}} } &rarr; "REDIRECT1" and "REDIRECT2" redirect here. For
+     * USE, see PAGE1.</li>
+     * </ul>
+     * TODO: Redirect6 isn't precisely implemented
+     */
+    static final class Redirects extends ArgumentCheckingHandler {
+
+        private final int numRedirectArgs;
+
+        /**
+         * @param numRedirectArgs number of leading arguments that are redirects
+         */
+        Redirects(int minArgs, int maxArgs, int numRedirectArgs) {
+            super(minArgs, maxArgs);
+            this.numRedirectArgs = numRedirectArgs;
+        }
+
+        @Override
+        void handle(AliasAstVisitor visitor, NodeList args, String name) {
+            final String pageTitle = visitor.getPageTitle();
+            for (int i = 0; i < Math.min(numRedirectArgs, args.size()); i++) {
+                visitor.addPageTitleAlias(AliasType.HAT_NOTE, name, visitor.getLinkSurface(args.get(i)), pageTitle);
+            }
+            for (int i = 2; i < args.size(); i += 2) {
+                visitor.addPageTitleAlias(AliasType.HAT_NOTE, name, pageTitle, visitor.getLinkSurface(args.get(i)));
+            }
+        }
+    }
+
+    /**
+     * Templates where a redirect is followed by other topics it might refer to. The redirect is produced as an alias
+     * of the page title, and of each topic.
+     * <ul>
+     * <li>{@code {{Redirect-distinguish|REDIRECT|PAGE1|PAGE2}} } &rarr; "REDIRECT" redirects here. It is not to be
+     * confused with PAGE1, or PAGE2.</li>
+     * <li>{@code {{Redirect-synonym|TERM|OTHER TOPIC}} } &rarr; "TERM" redirects here. TERM may also refer to OTHER
+     * TOPIC.</li>
+     * </ul>
+     * Note: The distinguish pages are explicitly not the same as the current page, but they could be confused with the
+     * redirect.
+     */
+    static final class RedirectTopics extends ArgumentCheckingHandler {
+
+        private final int endTopicArg;
+
+        private final boolean topicsLinked;
+
+        /**
+         * @param endTopicArg  index after the last topic argument, or {@link #ALL_ARGS}
+         * @param topicsLinked true if the topics are page links, false if they are free text
+         */
+        RedirectTopics(int minArgs, int maxArgs, int endTopicArg, boolean topicsLinked) {
+            super(minArgs, maxArgs);
+            this.endTopicArg = endTopicArg;
+            this.topicsLinked = topicsLinked;
+        }
+
+        @Override
+        void handle(AliasAstVisitor visitor, NodeList args, String name) {
+            if (args.isEmpty())
+                return;
+            final String redirect = visitor.getLinkSurface(args.get(0));
+            visitor.addPageTitleAlias(AliasType.HAT_NOTE, name, redirect, visitor.getPageTitle());
+            final int end = Math.min(endTopicArg, args.size());
+            for (int i = 1; i < end; i++) {
+                // TODO: Free-form topics should be parsed for links
+                final String topic = topicsLinked
+                        ? visitor.getLinkSurface(args.get(i))
+                        : visitor.getText(args.get(i));
+                visitor.addPageTitleAlias(AliasType.HAT_NOTE, name, redirect, topic);
+            }
+        }
+    }
+
+    /**
+     * {@code {{Redirect7|"REDIRECT1", "REDIRECT2", and "REDIRECT3"|USE1|PAGE1|USE2|PAGE2}} } &rarr; "REDIRECT1",
+     * "REDIRECT2", and "REDIRECT3" redirect here. For USE1, see PAGE1. For USE2, see PAGE2.
+     */
+    static final class QuotedRedirects extends ArgumentCheckingHandler {
+
+        QuotedRedirects(int minArgs, int maxArgs) {
+            super(minArgs, maxArgs);
+        }
+
+        @Override
+        void handle(AliasAstVisitor visitor, NodeList args, String name) {
+            if (args.isEmpty())
+                return;
+            final String[] parts = visitor.getText(args.get(0)).split("\"");
+            for (int i = 0; i < parts.length; i += 2)
+                visitor.addPageTitleAlias(AliasType.HAT_NOTE, name, parts[i], visitor.getPageTitle());
+        }
+    }
+
+    /**
+     * {@code {{Consider disambiguation|USE1|USE2|PAGE2|PAGE3}} } &rarr; This article is about USE1. For USE2, see
+     * PAGE2. If you are seeking another topic, additional searches are listed at PAGE3.
+     */
+    static final class ConsiderDisambiguation extends ArgumentCheckingHandler {
+
+        ConsiderDisambiguation(int minArgs, int maxArgs) {
+            super(minArgs, maxArgs);
+        }
+
+        @Override
+        void handle(AliasAstVisitor visitor, NodeList args, String name) {
+            if (args.size() < 3)
+                return;
+            final String pageTitle = visitor.getPageTitle();
+            final String page2 = visitor.getLinkSurface(args.get(2));
+            visitor.addPageTitleAlias(AliasType.HAT_NOTE, name, pageTitle, page2);
+            visitor.addPageTitleAlias(AliasType.HAT_NOTE, name, page2, pageTitle);
+            if (args.size() >= 4) {
+                final String page3 = visitor.getLinkSurface(args.get(3));
+                visitor.addPageTitleAlias(AliasType.HAT_NOTE, name, page3, pageTitle);
+            }
+        }
+    }
+
+    /**
+     * {@code {{Other people|NAME|PAGE}} } &rarr; For other people named NAME, see PAGE.
+     */
+    static final class OtherPeople extends ArgumentCheckingHandler {
+
+        OtherPeople(int minArgs, int maxArgs) {
+            super(minArgs, maxArgs);
+        }
+
+        @Override
+        void handle(AliasAstVisitor visitor, NodeList args, String name) {
+            if (args.isEmpty())
+                return;
+            final String pageTitle = visitor.getPageTitle();
+            final String personName = visitor.getLinkSurface(args.get(0));
+            visitor.addPageTitleAlias(AliasType.HAT_NOTE, name, personName, pageTitle);
+            if (args.size() >= 2) {
+                // XXX: Should probably be the second argument, but this has always produced the name again
+                final String page = visitor.getLinkSurface(args.get(0));
+                visitor.addPageTitleAlias(AliasType.HAT_NOTE, name, page, pageTitle);
+            }
+        }
+    }
+
+    /**
+     * Templates that link to pages about people of the same (or similar) name. The page title and each linked page
+     * are produced as aliases of each other.
+     * <ul>
+     * <li>{@code {{Other people3|PERSON1|PERSON2|PAGE2}} } &rarr; This article is about PERSON1. For PERSON2, see
+     * PAGE2.</li>
+     * <li>{@code {{Other people5|NAME1|NAME2|NAME3|NAME4}} } &rarr; For other people with similar names, see NAME1,
+     * NAME2, NAME3, or NAME4.</li>
+     * </ul>
+     */
+    static final class MutualAliases extends ArgumentCheckingHandler {
+
+        private final int requiredArgs;
+
+        private final int firstPageArg;
+
+        private final int endPageArg;
+
+        /**
+         * @param requiredArgs number of arguments required for any aliases to be produced
+         * @param firstPageArg index of the first link argument
+         * @param endPageArg   index after the last link argument, or {@link #ALL_ARGS}
+         */
+        MutualAliases(int minArgs, int maxArgs, int requiredArgs, int firstPageArg, int endPageArg) {
+            super(minArgs, maxArgs);
+            this.requiredArgs = requiredArgs;
+            this.firstPageArg = firstPageArg;
+            this.endPageArg = endPageArg;
+        }
+
+        @Override
+        void handle(AliasAstVisitor visitor, NodeList args, String name) {
+            if (args.size() < requiredArgs)
+                return;
+            final String pageTitle = visitor.getPageTitle();
+            final int end = Math.min(endPageArg, args.size());
+            for (int i = firstPageArg; i < end; i++) {
+                final String page = visitor.getLinkSurface(args.get(i));
+                visitor.addPageTitleAlias(AliasType.HAT_NOTE, name, pageTitle, page);
+                visitor.addPageTitleAlias(AliasType.HAT_NOTE, name, page, pageTitle);
+            }
+        }
+    }
+
+}
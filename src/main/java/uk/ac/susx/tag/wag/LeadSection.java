@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2010-2013, University of Sussex
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the University of Sussex nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.ac.susx.tag.wag;
+
+import com.google.common.collect.ImmutableSet;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Finds the end of the lead section (the text preceding the first heading) directly from the wiki text, so that
+ * only the lead need be parsed when nothing else is required.
+ * <p/>
+ * The scan is conservative: a heading is only accepted when it is plain (contains no markup) and all the brackets,
+ * braces, and tags preceding it are balanced, so it can not be inside a template, link, table, or extension tag.
+ * Anything else is ignored, and if no heading is accepted the whole text must be parsed. The end found may precede
+ * headings that Sweble recognises but this class does not, which does no harm since the parser still sees them.
+ *
+ * @author Hamish Morgan
+ */
+final class LeadSection {
+
+    /**
+     * A plain heading line, with the same number of equals signs on either side of the title.
+     */
+    private static final Pattern HEADING = Pattern.compile(
+            "(={1,6})[ \\t]*[^=\\s\\[\\]{}<>'&|][^=\\[\\]{}<>'&|\\n]*?\\1[ \\t]*");
+
+    /**
+     * An opening, closing, or self-closing tag.
+     */
+    private static final Pattern TAG = Pattern.compile("<(/?)([A-Za-z][A-Za-z0-9]*)(?:\\s[^<>]*?)?(/?)>");
+
+    private static final String COMMENT_START = "<!--";
+
+    private static final String COMMENT_END = "-->";
+
+    /**
+     * Tags that are never closed.
+     */
+    private static final ImmutableSet<String> VOID_TAGS = ImmutableSet.of("br", "hr", "wbr", "img");
+
+    private LeadSection() {
+    }
+
+    /**
+     * Get the offset at which the lead section of the given wiki text ends.
+     *
+     * @param wikiText the page text
+     * @return offset of the first (safely recognised) heading, or -1 if the whole text must be parsed
+     */
+    static int findEnd(final String wikiText) {
+        checkNotNull(wikiText, "wikiText");
+
+        final Matcher heading = HEADING.matcher(wikiText);
+        final Matcher tag = TAG.matcher(wikiText);
+        final Map<String, Integer> tagDepths = new HashMap<String, Integer>();
+        int unbalancedTags = 0;
+        int braceDepth = 0;
+        int bracketDepth = 0;
+        boolean lineStart = true;
+
+        int i = 0;
+        while (i < wikiText.length()) {
+            final char c = wikiText.charAt(i);
+
+            if (lineStart && c == '=' && braceDepth == 0 && bracketDepth == 0 && unbalancedTags == 0) {
+                int lineEnd = wikiText.indexOf('\n', i);
+                if (lineEnd == -1)
+                    lineEnd = wikiText.length();
+                if (heading.region(i, lineEnd).matches())
+                    return i;
+            }
+            lineStart = false;
+
+            switch (c) {
+                case '\n':
+                    lineStart = true;
+                    break;
+                case '{':
+                    ++braceDepth;
+                    break;
+                case '}':
+                    if (--braceDepth < 0)
+                        // Unmatched, so nothing that follows can be trusted
+                        return -1;
+                    break;
+                case '[':
+                    ++bracketDepth;
+                    break;
+                case ']':
+                    if (--bracketDepth < 0)
+                        // Unmatched, so nothing that follows can be trusted
+                        return -1;
+                    break;
+                case '<':
+                    if (wikiText.startsWith(COMMENT_START, i)) {
+                        // Comments are inert, so skip their content entirely
+                        final int commentEnd = wikiText.indexOf(COMMENT_END, i + COMMENT_START.length());
+                        if (commentEnd == -1)
+                            return -1;
+                        i = commentEnd + COMMENT_END.length();
+                        continue;
+                    }
+                    if (tag.region(i, wikiText.length()).lookingAt()) {
+                        final String name = tag.group(2).toLowerCase(Locale.ENGLISH);
+                        if (tag.group(3).isEmpty() && !VOID_TAGS.contains(name)) {
+                            final int previous = tagDepths.containsKey(name) ? tagDepths.get(name) : 0;
+                            final int depth = previous + (tag.group(1).isEmpty() ? 1 : -1);
+                            if (depth < 0)
+                                return -1;
+                            tagDepths.put(name, depth);
+                            if (previous == 0)
+                                ++unbalancedTags;
+                            else if (depth == 0)
+                                --unbalancedTags;
+                        }
+                        i = tag.end();
+                        continue;
+                    }
+                    if (i + 1 < wikiText.length() && isTagNameStart(wikiText.charAt(i + 1)))
+                        // Looks like a tag but isn't complete, so we can't tell where it ends
+                        return -1;
+                    break;
+                default:
+                    break;
+            }
+            ++i;
+        }
+        return -1;
+    }
+
+    private static boolean isTagNameStart(final char c) {
+        return c == '/' || (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+}
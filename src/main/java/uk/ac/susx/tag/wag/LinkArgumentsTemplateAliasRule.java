@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2010-2013, University of Sussex
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the University of Sussex nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.ac.susx.tag.wag;
+
+import com.google.common.collect.ImmutableSet;
+
+import javax.annotation.concurrent.Immutable;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Set;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * A {@link TemplateAliasRule} in which some of the template arguments are page links, each of which is produced as an
+ * alias of the page title (or the page title is produced as an alias of each link.) This is the form of rule defined
+ * in template rule data files.
+ *
+ * @author Hamish Morgan
+ * @see TemplateAliasRules
+ */
+@Immutable
+final class LinkArgumentsTemplateAliasRule implements TemplateAliasRule {
+
+    private final ImmutableSet<String> templateNames;
+
+    private final AliasType aliasType;
+
+    /**
+     * Indices (from 0) of the arguments that are page links.
+     */
+    private final BitSet linkArgs;
+
+    /**
+     * Index from which all further arguments are links, or Integer.MAX_VALUE if there is none.
+     */
+    private final int linkArgsFrom;
+
+    /**
+     * True if each link is an alias of the page title, false if the page title is an alias of each link.
+     */
+    private final boolean linksToTitle;
+
+    LinkArgumentsTemplateAliasRule(Set<String> templateNames, AliasType aliasType,
+                                   BitSet linkArgs, int linkArgsFrom, boolean linksToTitle) {
+        checkArgument(!templateNames.isEmpty(), "templateNames is empty");
+        this.templateNames = ImmutableSet.copyOf(templateNames);
+        this.aliasType = checkNotNull(aliasType, "aliasType");
+        this.linkArgs = (BitSet) linkArgs.clone();
+        this.linkArgsFrom = linkArgsFrom;
+        this.linksToTitle = linksToTitle;
+    }
+
+    @Override
+    public Set<String> getTemplateNames() {
+        return templateNames;
+    }
+
+    @Override
+    public AliasType getAliasType() {
+        return aliasType;
+    }
+
+    private boolean isLinkArg(int index) {
+        return index >= linkArgsFrom || linkArgs.get(index);
+    }
+
+    @Override
+    public void apply(String templateName, String pageTitle, List<String> args, AliasHandler aliases) {
+        for (int i = 0; i < args.size(); i++) {
+            if (!isLinkArg(i))
+                continue;
+            final String link = AstUtils.getLinkSurface(args.get(i));
+            aliases.handle(linksToTitle
+                    ? new Alias(aliasType, templateName, link, pageTitle)
+                    : new Alias(aliasType, templateName, pageTitle, link));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "LinkArgumentsTemplateAliasRule{"
+                + "templateNames=" + templateNames
+                + ", aliasType=" + aliasType
+                + ", linkArgs=" + linkArgs
+                + (linkArgsFrom == Integer.MAX_VALUE ? "" : ", linkArgsFrom=" + linkArgsFrom)
+                + ", linksToTitle=" + linksToTitle
+                + '}';
+    }
+}
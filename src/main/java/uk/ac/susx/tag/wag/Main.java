@@ -2,18 +2,30 @@ package uk.ac.susx.tag.wag;
 
 import com.beust.jcommander.*;
 import com.beust.jcommander.converters.BaseConverter;
+import com.beust.jcommander.converters.IParameterSplitter;
 import com.beust.jcommander.internal.Lists;
+import com.google.common.base.Charsets;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Sets;
 import com.google.common.io.*;
+import org.apache.commons.compress.compressors.CompressorException;
+import org.apache.commons.compress.compressors.CompressorStreamFactory;
+import uk.ac.susx.tag.util.CompressorStreamFactory2;
 import uk.ac.susx.tag.util.IOUtils;
 import uk.ac.susx.tag.util.StringConverterFactory;
+import uk.ac.susx.tag.util.Utf8ChannelWriter;
 
 import java.io.*;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.channels.Channels;
 import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.EnumMap;
 import java.util.EnumSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -46,33 +58,182 @@ public class Main {
         CSV
     }
 
+    private enum OutputCompression {
+        /**
+         * Select the compression from the output file extension; uncompressed if it is not recognised, or when writing
+         * to stdout.
+         */
+        AUTO(null, null),
+
+        /**
+         * Write plain text.
+         */
+        NONE(null, null),
+
+        GZ(CompressorStreamFactory.GZIP, ".gz"),
+
+        BZ2(CompressorStreamFactory.BZIP2, ".bz2"),
+
+        XZ(CompressorStreamFactory.XZ, ".xz");
+
+        private final String compressorName;
+        private final String extension;
+
+        private OutputCompression(String compressorName, String extension) {
+            this.compressorName = compressorName;
+            this.extension = extension;
+        }
+
+        /**
+         * @return the compression implied by the extension of the given file, or NONE if it is not recognised
+         */
+        static OutputCompression forFile(File file) {
+            final String name = file.getName().toLowerCase();
+            for (OutputCompression compression : values())
+                if (compression.extension != null && name.endsWith(compression.extension))
+                    return compression;
+            return NONE;
+        }
+    }
+
+    private enum OutputSharding {
+        /**
+         * Write a single file.
+         */
+        NONE,
+
+        /**
+         * Write the aliases of each type to a separate file.
+         */
+        TYPE,
+
+        /**
+         * Partition the aliases between a number of files, by a hash of their source.
+         */
+        SOURCE,
+
+        /**
+         * Partition the aliases between a number of files, by a hash of their target.
+         */
+        TARGET
+    }
+
+    /**
+     * Destination and layout of one of the outputs.
+     */
+    private static final class Output {
+
+        /**
+         * Sink of each shard, or just one sink when not sharded.
+         */
+        private final List<CharSink> sinks;
+        private final OutputSharding sharding;
+        private final OutputFormat format;
+        private final EnumSet<WriteTabulatedAliasHandler.Column> columns;
+
+        /**
+         * Types of alias written to this output, or null for every produced type. When sharding by type, these are the
+         * types of each shard, in order.
+         */
+        private final EnumSet<AliasType> types;
+
+        private Output(List<CharSink> sinks, OutputSharding sharding, OutputFormat format,
+                       EnumSet<WriteTabulatedAliasHandler.Column> columns, EnumSet<AliasType> types) {
+            this.sinks = sinks;
+            this.sharding = sharding;
+            this.format = format;
+            this.columns = columns;
+            this.types = types;
+        }
+    }
+
     private final List<ByteSource> sources;
-    private final CharSink sink;
+    private final List<Output> outputs;
     private final EnumSet<AliasType> producedTypes;
     private final int pageLimit;
     private final boolean produceIdentityAliases;
-    private final OutputFormat outputFormat;
-    private final EnumSet<WriteTabulatedAliasHandler.Column> outputColumns;
+    private final int numWorkerThreads;
+    private final int numDecompressionThreads;
+    private final File indexedDumpFile;
+    private final File indexFile;
+    private final Set<Integer> producedNamespaces;
+    private final List<TemplateAliasRule> templateAliasRules;
+    private final int maxAliasWords;
+    private final int maxAliasChars;
+    private final int titleCacheSize;
+    private final boolean deduplicationEnabled;
+    private final long deduplicationMemory;
+    private final boolean aggregationEnabled;
+    private final long aggregationMemory;
+    private final List<WriteTabulatedAliasHandler.Column> sortKey;
+    private final long sortMemory;
+    private final int sortMergeWidth;
+    private final boolean asyncWriteEnabled;
+    private final int asyncWriteBatchSize;
+    private final int asyncWriteMaxPendingBatches;
 
     /**
      * Private constructor. Use the builder to instantiate: {@link #builder()}.
      *
      * @param sources
-     * @param sink
+     * @param outputs                 destinations of the aliases, all produced from the same pass over the input
      * @param producedTypes
      * @param pageLimit
      * @param produceIdentityAliases
+     * @param numWorkerThreads
+     * @param numDecompressionThreads
+     * @param indexedDumpFile         multi-stream dump to process using the index (or null)
+     * @param indexFile               index of the multi-stream dump (or null)
+     * @param producedNamespaces      ids of the namespaces to process (or empty for all)
+     * @param templateAliasRules      additional template rules (or empty for the standard templates only)
+     * @param maxAliasWords           maximum number of words in an alias source or target
+     * @param maxAliasChars           maximum number of characters in an alias source or target
+     * @param titleCacheSize          maximum number of normalised titles cached (or 0 for no cache)
+     * @param deduplicationEnabled    whether duplicate aliases are dropped before they are written
+     * @param deduplicationMemory     memory budget of the de-duplication, in bytes
+     * @param aggregationEnabled      whether distinct aliases are written once, with a count of their occurrences
+     * @param aggregationMemory       memory budget of the aggregation, in bytes
+     * @param sortKey                 columns to sort the output by (or empty for unsorted output)
+     * @param sortMemory              memory budget of the sort, in bytes
+     * @param sortMergeWidth          maximum number of sorted runs merged at once
+     * @param asyncWriteEnabled       whether aliases are written on a separate thread (always the case when there are
+     *                                several outputs)
+     * @param asyncWriteBatchSize     number of aliases passed to the writer thread at a time
+     * @param asyncWriteMaxPendingBatches number of batches waiting to be written before alias production blocks
      */
-    private Main(List<ByteSource> sources, CharSink sink,
+    private Main(List<ByteSource> sources, List<Output> outputs,
                  EnumSet<AliasType> producedTypes, int pageLimit, boolean produceIdentityAliases,
-                 OutputFormat outputFormat, EnumSet<WriteTabulatedAliasHandler.Column> outputColumns) {
+                 int numWorkerThreads, int numDecompressionThreads,
+                 File indexedDumpFile, File indexFile, Set<Integer> producedNamespaces,
+                 List<TemplateAliasRule> templateAliasRules, int maxAliasWords, int maxAliasChars,
+                 int titleCacheSize, boolean deduplicationEnabled, long deduplicationMemory,
+                 boolean aggregationEnabled, long aggregationMemory,
+                 List<WriteTabulatedAliasHandler.Column> sortKey, long sortMemory, int sortMergeWidth,
+                 boolean asyncWriteEnabled, int asyncWriteBatchSize, int asyncWriteMaxPendingBatches) {
         this.sources = sources;
-        this.sink = sink;
+        this.outputs = outputs;
         this.producedTypes = producedTypes;
         this.pageLimit = pageLimit;
         this.produceIdentityAliases = produceIdentityAliases;
-        this.outputFormat = outputFormat;
-        this.outputColumns = outputColumns;
+        this.numWorkerThreads = numWorkerThreads;
+        this.numDecompressionThreads = numDecompressionThreads;
+        this.indexedDumpFile = indexedDumpFile;
+        this.indexFile = indexFile;
+        this.producedNamespaces = producedNamespaces;
+        this.templateAliasRules = templateAliasRules;
+        this.maxAliasWords = maxAliasWords;
+        this.maxAliasChars = maxAliasChars;
+        this.titleCacheSize = titleCacheSize;
+        this.deduplicationEnabled = deduplicationEnabled;
+        this.deduplicationMemory = deduplicationMemory;
+        this.aggregationEnabled = aggregationEnabled;
+        this.aggregationMemory = aggregationMemory;
+        this.sortKey = sortKey;
+        this.sortMemory = sortMemory;
+        this.sortMergeWidth = sortMergeWidth;
+        this.asyncWriteEnabled = asyncWriteEnabled;
+        this.asyncWriteBatchSize = asyncWriteBatchSize;
+        this.asyncWriteMaxPendingBatches = asyncWriteMaxPendingBatches;
     }
 
     public static Builder builder() {
@@ -80,22 +241,72 @@ public class Main {
     }
 
     private AliasHandler newOutputHandler(
-            PrintWriter outWriter) throws IOException {
-        final AliasHandler handler;
-        switch (outputFormat) {
-            case TSV_SIMPLIFIED:
-                handler = new SpaceTrimmingAliasHandlerAdapter(
-                        WriteTabulatedAliasHandler.newTsvInstance(outWriter, outputColumns));
+            Output output, List<Writer> outWriters) throws IOException {
+        final List<AliasHandler> shards = Lists.newArrayList();
+        for (Writer outWriter : outWriters) {
+            AliasHandler handler;
+            switch (output.format) {
+                case TSV_SIMPLIFIED:
+                    handler = new SpaceTrimmingAliasHandlerAdapter(wrapWriter(
+                            WriteDelimitedAliasHandler.newTsvInstance(outWriter, output.columns), outWriters.size()));
+                    break;
+                case TSV:
+                    handler = wrapWriter(
+                            WriteDelimitedAliasHandler.newTsvInstance(outWriter, output.columns), outWriters.size());
+                    break;
+                case CSV:
+                    handler = wrapWriter(
+                            WriteDelimitedAliasHandler.newCsvInstance(outWriter, output.columns), outWriters.size());
+                    break;
+                default:
+                    throw new AssertionError(output.format);
+            }
+            // Each stream gets it's own writer thread when there are several outputs, so the slowest doesn't hold back
+            // the rest
+            if (asyncWriteEnabled || outputs.size() > 1)
+                handler = new AsyncAliasHandler(handler, asyncWriteBatchSize, asyncWriteMaxPendingBatches);
+            shards.add(handler);
+        }
+
+        AliasHandler handler;
+        switch (output.sharding) {
+            case NONE:
+                handler = shards.get(0);
+                break;
+            case TYPE:
+                final Map<AliasType, AliasHandler> typeShards = new EnumMap<AliasType, AliasHandler>(AliasType.class);
+                for (AliasType type : output.types)
+                    typeShards.put(type, shards.get(typeShards.size()));
+                handler = ShardingAliasHandler.byType(typeShards);
                 break;
-            case TSV:
-                handler = WriteTabulatedAliasHandler.newTsvInstance(outWriter, outputColumns);
+            case SOURCE:
+                handler = ShardingAliasHandler.bySource(shards);
                 break;
-            case CSV:
-                handler = WriteTabulatedAliasHandler.newCsvInstance(outWriter, outputColumns);
+            case TARGET:
+                handler = ShardingAliasHandler.byTarget(shards);
                 break;
             default:
-                throw new AssertionError(outputFormat);
+                throw new AssertionError(output.sharding);
         }
+        // Filter before queueing, so dropped aliases are never copied to the writer thread
+        if (output.types != null && !output.types.containsAll(producedTypes))
+            handler = new TypeFilteringAliasHandler(handler, output.types);
+        return handler;
+    }
+
+    /**
+     * Wrap the given writer so that duplicate aliases are aggregated or dropped, and the output is sorted, if enabled.
+     *
+     * @param shares number of writers (i.e. shards) between which the memory budgets are divided
+     */
+    private AliasHandler wrapWriter(AliasHandler writer, int shares) {
+        AliasHandler handler = writer;
+        if (!sortKey.isEmpty())
+            handler = new SortingAliasHandler(handler, sortKey, sortMemory / shares, sortMergeWidth);
+        if (aggregationEnabled)
+            handler = new AggregatingAliasHandler(handler, aggregationMemory / shares);
+        else if (deduplicationEnabled)
+            handler = new DeduplicatingAliasHandler(handler, deduplicationMemory / shares);
         return handler;
     }
 
@@ -117,24 +328,47 @@ public class Main {
         final Closer outCloser = Closer.create();
         try {
             // Set up the output stuff
-            final Writer writer = outCloser.register(sink.openBufferedStream());
-            final PrintWriter outWriter = outCloser.register(new PrintWriter(writer));
-
-            final AliasHandler handler = newOutputHandler(outWriter);
-            if (handler instanceof Closeable)
-                outCloser.register(((Closeable) handler));
+            // The writers buffer whole blocks of rows, so the sinks do not need to be buffered again
+            final List<Writer> outWriters = Lists.newArrayList();
+            final List<AliasHandler> outHandlers = Lists.newArrayList();
+            for (Output output : outputs) {
+                final List<Writer> shardWriters = Lists.newArrayList();
+                for (CharSink sink : output.sinks)
+                    shardWriters.add(outCloser.register(sink.openStream()));
+                outWriters.addAll(shardWriters);
+                final AliasHandler outHandler = newOutputHandler(output, shardWriters);
+                if (outHandler instanceof Closeable)
+                    outCloser.register(((Closeable) outHandler));
+                outHandlers.add(outHandler);
+            }
+            final AliasHandler handler = outHandlers.size() == 1
+                    ? outHandlers.get(0)
+                    : new FanOutAliasHandler(outHandlers);
 
             final WikiAliasGenerator generator =
                     new WikiAliasGenerator(handler, producedTypes);
             generator.setIdentityAliasesProduced(produceIdentityAliases);
-
-            for (final ByteSource source : sources) {
-                processSource(source, generator);
+            generator.setNumWorkerThreads(numWorkerThreads);
+            generator.setNumDecompressionThreads(numDecompressionThreads);
+            generator.setProducedNamespaces(producedNamespaces);
+            generator.setMaxAliasWords(maxAliasWords);
+            generator.setMaxAliasChars(maxAliasChars);
+            generator.setTitleCacheSize(titleCacheSize);
+            if (!templateAliasRules.isEmpty())
+                generator.setTemplateAliasRules(templateAliasRules);
+
+            if (indexFile != null) {
+                generator.process(indexedDumpFile, MultistreamIndex.read(indexFile), pageLimit);
+            } else {
+                for (final ByteSource source : sources) {
+                    processSource(source, generator);
+                }
             }
 
             if (handler instanceof Flushable)
                 ((Flushable) handler).flush();
-            outWriter.flush();
+            for (Writer outWriter : outWriters)
+                outWriter.flush();
         } catch (Throwable throwable) {
             throw outCloser.rethrow(throwable);
         } finally {
@@ -190,6 +424,8 @@ public class Main {
          *
          */
         private static final Logger LOG = Logger.getLogger(Builder.class.getName());
+
+        private static final int DEFAULT_NUM_OUTPUT_SHARDS = 16;
         private static final FileWriteMode[] FILE_WRITE_MODE_TRUNCATE = {};
         /**
          *
@@ -216,6 +452,52 @@ public class Main {
          */
         private Charset outputCharset = Charset.defaultCharset();
 
+        /**
+         * Size of the buffer used to encode UTF-8 output, in kilobytes.
+         */
+        @Parameter(names = {"-ob", "--outputBuffer"},
+                description = "Size (in kilobytes) of the buffer used to encode output when writing UTF-8 to a file " +
+                        "or compressing.")
+        private int outputBufferKB = Utf8ChannelWriter.DEFAULT_BUFFER_SIZE >> 10;
+
+        /**
+         * Compression of the output, or AUTO to select it from the output file extension.
+         */
+        @Parameter(names = {"-oz", "--outputCompression"},
+                description = "Compression of the output. One of AUTO, NONE, GZ, BZ2, or XZ. AUTO selects from the " +
+                        "output file extension (.gz, .bz2, or .xz.)",
+                converter = OutputCompressionStringConverter.class)
+        private OutputCompression outputCompression = OutputCompression.AUTO;
+
+        /**
+         * How the output is split between files, if at all.
+         */
+        @Parameter(names = {"-sh", "--shardBy"},
+                description = "Split the output into shards, which can be processed in parallel. One of NONE, TYPE " +
+                        "(a file per alias type), SOURCE, or TARGET (a number of files, partitioned by a hash of the " +
+                        "source or target.) Shard files are named after the output file, e.g. aliases-LINK.tsv.gz " +
+                        "or aliases-03.tsv.gz.",
+                converter = OutputShardingStringConverter.class)
+        private OutputSharding outputSharding = OutputSharding.NONE;
+
+        /**
+         * Number of shards when partitioning the output by source or target.
+         */
+        @Parameter(names = {"-shn", "--shards"},
+                description = "Number of shards, when the output is split by SOURCE or TARGET.")
+        private int numOutputShards = DEFAULT_NUM_OUTPUT_SHARDS;
+
+        /**
+         * Specifications of additional outputs, written from the same pass over the input.
+         */
+        @Parameter(names = {"-ao", "--additionalOutput"},
+                description = "Additional output, written from the same pass over the input. Given as FILE followed " +
+                        "by any of :format=FORMAT, :columns=COLUMN,..., :types=TYPE,..., :compression=COMPRESSION, " +
+                        ":shardBy=SHARDING, or :shards=N (e.g. links.csv.gz:format=CSV:types=LINK,REDIRECT). " +
+                        "Unspecified settings are taken from the main output options. May be given more than once.",
+                splitter = NonSplitter.class)
+        private List<String> additionalOutputs = Lists.newArrayList();
+
         /**
          * Whether or not the output file can be overwritten (if it exists)
          */
@@ -259,11 +541,151 @@ public class Main {
          *
          */
         @Parameter(names = {"-oc", "--outputColumns"},
-                description = "Set of output columns to produce. Comma-separated subset of {TYPE, SUBTYPE, SOURCE, TARGET}",
+                description = "Set of output columns to produce. Comma-separated subset of {TYPE, SUBTYPE, SOURCE, " +
+                        "TARGET, COUNT}. (COUNT is added to the default columns when aggregating.)",
                 converter = ColumnStringConverter.class)
         private List<WriteTabulatedAliasHandler.Column> outputColumns
-                = Lists.newArrayList(EnumSet.allOf(WriteTabulatedAliasHandler.Column.class));
+                = Lists.newArrayList(WriteTabulatedAliasHandler.DEFAULT_COLUMNS);
 
+        /**
+         * Number of threads used to parse pages.
+         */
+        @Parameter(names = {"-j", "--threads"},
+                description = "Number of worker threads used to parse pages and extract aliases.")
+        private int numWorkerThreads = WikiAliasGenerator.DEFAULT_numWorkerThreads;
+
+        /**
+         * Number of threads used to decompress multi-stream bzip2 dumps.
+         */
+        @Parameter(names = {"-dj", "--decompressionThreads"},
+                description = "Number of threads used to decompress multi-stream bzip2 dumps " +
+                        "(e.g pages-articles-multistream.xml.bz2.)")
+        private int numDecompressionThreads = WikiAliasGenerator.DEFAULT_numDecompressionThreads;
+
+        /**
+         * Index of a multi-stream dump, used to split the dump into independently processed ranges.
+         */
+        @Parameter(names = {"-x", "--index"},
+                description = "Index file of a multi-stream dump (e.g pages-articles-multistream-index.txt.bz2.) " +
+                        "When given, the input must be the single multi-stream dump file that it indexes.")
+        private File indexFile = null;
+
+        /**
+         * Ids of the namespaces that pages are processed from, or "*" for all namespaces.
+         */
+        @Parameter(names = {"-ns", "--namespaces"},
+                description = "Comma-separated list of namespace ids to process pages from (0 is the main article " +
+                        "namespace), or * for all namespaces.")
+        private List<String> producedNamespaces = Lists.newArrayList(String.valueOf(WikiAliasGenerator.MAIN_NAMESPACE));
+
+        /**
+         * Data file of additional template alias rules.
+         */
+        @Parameter(names = {"-tr", "--templateRules"},
+                description = "Data file of additional rules for extracting aliases from templates. See " +
+                        "TemplateAliasRules for the format.")
+        private File templateRulesFile = null;
+
+        /**
+         * Maximum number of words in the source or target of an alias.
+         */
+        @Parameter(names = {"-mw", "--maxWords"},
+                description = "Maximum number of words in the source or target of an alias. Longer aliases are " +
+                        "discarded.")
+        private int maxAliasWords = WikiAliasGenerator.DEFAULT_maxAliasWords;
+
+        /**
+         * Maximum number of characters in the source or target of an alias.
+         */
+        @Parameter(names = {"-mc", "--maxChars"},
+                description = "Maximum number of characters in the source or target of an alias. Longer aliases " +
+                        "are discarded.")
+        private int maxAliasChars = WikiAliasGenerator.DEFAULT_maxAliasChars;
+
+        /**
+         * Maximum number of normalised page titles that are cached.
+         */
+        @Parameter(names = {"-tc", "--titleCacheSize"},
+                description = "Maximum number of normalised page titles to cache (or 0 for no cache.) Hit and miss " +
+                        "statistics are logged at the end of the run.")
+        private int titleCacheSize = WikiAliasGenerator.DEFAULT_titleCacheSize;
+
+        /**
+         * Whether duplicate aliases are dropped, so each distinct alias is written once.
+         */
+        @Parameter(names = {"-d", "--dedup"},
+                description = "Write each distinct alias only once, dropping duplicates found anywhere in the input.")
+        private boolean deduplicationEnabled = false;
+
+        /**
+         * Memory budget of the de-duplication, in megabytes.
+         */
+        @Parameter(names = {"-dm", "--dedupMemory"},
+                description = "Memory (in megabytes) used to de-duplicate aliases, before spilling to temporary " +
+                        "files.")
+        private int deduplicationMemoryMB = (int) (DeduplicatingAliasHandler.DEFAULT_MEMORY_BUDGET >> 20);
+
+        /**
+         * Whether each distinct alias is written once, with the number of times it occurs.
+         */
+        @Parameter(names = {"-a", "--aggregate"},
+                description = "Write each distinct alias only once, along with the number of times it occurs in the " +
+                        "input. The output is ordered by type, subtype, source and target.")
+        private boolean aggregationEnabled = false;
+
+        /**
+         * Memory budget of the aggregation, in megabytes.
+         */
+        @Parameter(names = {"-am", "--aggregateMemory"},
+                description = "Memory (in megabytes) used to aggregate aliases, before spilling to temporary files.")
+        private int aggregationMemoryMB = (int) (AggregatingAliasHandler.DEFAULT_MEMORY_BUDGET >> 20);
+
+        /**
+         * Columns to sort the output by, or empty for unsorted output.
+         */
+        @Parameter(names = {"-s", "--sortBy"},
+                description = "Sort the output by these columns, most significant first. Comma-separated list of " +
+                        "{TYPE, SUBTYPE, SOURCE, TARGET, COUNT}. Text is sorted by UTF-8 bytes (like LC_ALL=C " +
+                        "sort), and counts numerically. (Unsorted if not given.)",
+                converter = ColumnStringConverter.class)
+        private List<WriteTabulatedAliasHandler.Column> sortKey = Lists.newArrayList();
+
+        /**
+         * Memory budget of the sort, in megabytes.
+         */
+        @Parameter(names = {"-sm", "--sortMemory"},
+                description = "Memory (in megabytes) used to sort aliases, before spilling to temporary files.")
+        private int sortMemoryMB = (int) (SortingAliasHandler.DEFAULT_MEMORY_BUDGET >> 20);
+
+        /**
+         * Maximum number of sorted runs that are merged at once.
+         */
+        @Parameter(names = {"-sw", "--sortMergeWays"},
+                description = "Maximum number of sorted temporary files that are merged at once.")
+        private int sortMergeWidth = SortingAliasHandler.DEFAULT_MERGE_WIDTH;
+
+        /**
+         * Whether or not aliases are written on a separate thread.
+         */
+        @Parameter(names = {"-aw", "--asyncWrite"},
+                description = "Write aliases on a separate thread, so slow output (e.g. compression) does not " +
+                        "stall page processing. (Always enabled, for each output, when there are additional outputs.)")
+        private boolean asyncWriteEnabled = false;
+
+        /**
+         * Number of aliases passed to the writer thread at a time.
+         */
+        @Parameter(names = {"-awb", "--asyncWriteBatchSize"},
+                description = "Number of aliases passed to the writer thread at a time, when writing asynchronously.")
+        private int asyncWriteBatchSize = AsyncAliasHandler.DEFAULT_BATCH_SIZE;
+
+        /**
+         * Number of batches that may wait to be written before page processing is paused.
+         */
+        @Parameter(names = {"-awq", "--asyncWriteQueue"},
+                description = "Number of batches that may wait to be written before page processing is paused, " +
+                        "when writing asynchronously.")
+        private int asyncWriteMaxPendingBatches = AsyncAliasHandler.DEFAULT_MAX_PENDING_BATCHES;
 
         /**
          *
@@ -288,6 +710,41 @@ public class Main {
             return this;
         }
 
+        /**
+         * Set the size of the buffer used to encode output, when writing UTF-8 to a file.
+         *
+         * @param outputBufferKB buffer size in kilobytes
+         * @return this builder (for method chaining)
+         */
+        public Builder setOutputBufferKB(int outputBufferKB) {
+            this.outputBufferKB = outputBufferKB;
+            return this;
+        }
+
+        /**
+         * Set the number of shards, when partitioning the output by source or target.
+         *
+         * @param numOutputShards number of shards
+         * @return this builder (for method chaining)
+         */
+        public Builder setNumOutputShards(int numOutputShards) {
+            this.numOutputShards = numOutputShards;
+            return this;
+        }
+
+        /**
+         * Set the additional outputs, each given as a file name followed by any of <tt>:format=FORMAT</tt>,
+         * <tt>:columns=COLUMN,...</tt>, <tt>:types=TYPE,...</tt>, <tt>:compression=COMPRESSION</tt>,
+         * <tt>:shardBy=SHARDING</tt>, or <tt>:shards=N</tt>.
+         *
+         * @param additionalOutputs additional output specifications
+         * @return this builder (for method chaining)
+         */
+        public Builder setAdditionalOutputs(List<String> additionalOutputs) {
+            this.additionalOutputs = Lists.newArrayList(checkNotNull(additionalOutputs, "additionalOutputs"));
+            return this;
+        }
+
         /**
          * Add the specified files to the list of input resource.
          * <p/>
@@ -352,6 +809,207 @@ public class Main {
             return this;
         }
 
+        /**
+         * Set the number of worker threads used to parse pages and extract aliases.
+         *
+         * @param numWorkerThreads number of threads that parse pages
+         * @return this builder (for method chaining)
+         */
+        public Builder setNumWorkerThreads(int numWorkerThreads) {
+            this.numWorkerThreads = numWorkerThreads;
+            return this;
+        }
+
+        /**
+         * Set the number of threads used to decompress multi-stream bzip2 dumps.
+         *
+         * @param numDecompressionThreads number of threads that decompress input
+         * @return this builder (for method chaining)
+         */
+        public Builder setNumDecompressionThreads(int numDecompressionThreads) {
+            this.numDecompressionThreads = numDecompressionThreads;
+            return this;
+        }
+
+        /**
+         * Set the index of a multi-stream dump. The dump is split into ranges using the index, which are processed
+         * independently by the worker threads. The input must be the single multi-stream dump file that is indexed.
+         *
+         * @param indexFile multi-stream index file (or null to process the inputs sequentially)
+         * @return this builder (for method chaining)
+         */
+        public Builder setIndexFile(File indexFile) {
+            this.indexFile = indexFile;
+            return this;
+        }
+
+        /**
+         * Set the namespaces that pages are processed from. Each element is a namespace id, or "*" for all
+         * namespaces.
+         *
+         * @param producedNamespaces namespace ids
+         * @return this builder (for method chaining)
+         */
+        public Builder setProducedNamespaces(List<String> producedNamespaces) {
+            this.producedNamespaces = producedNamespaces;
+            return this;
+        }
+
+        /**
+         * Set a data file of additional template alias rules, which are used together with any rules registered as
+         * services on the class path.
+         *
+         * @param templateRulesFile template rules file (or null for none)
+         * @return this builder (for method chaining)
+         */
+        public Builder setTemplateRulesFile(File templateRulesFile) {
+            this.templateRulesFile = templateRulesFile;
+            return this;
+        }
+
+        /**
+         * Set the maximum number of white space separated words in the source or target of an alias.
+         *
+         * @param maxAliasWords maximum number of words in an alias
+         * @return this builder (for method chaining)
+         */
+        public Builder setMaxAliasWords(int maxAliasWords) {
+            this.maxAliasWords = maxAliasWords;
+            return this;
+        }
+
+        /**
+         * Set the maximum number of characters in the source or target of an alias.
+         *
+         * @param maxAliasChars maximum number of characters in an alias
+         * @return this builder (for method chaining)
+         */
+        public Builder setMaxAliasChars(int maxAliasChars) {
+            this.maxAliasChars = maxAliasChars;
+            return this;
+        }
+
+        /**
+         * Set the maximum number of normalised page titles that are cached.
+         *
+         * @param titleCacheSize maximum number of cached titles (or 0 for no cache)
+         * @return this builder (for method chaining)
+         */
+        public Builder setTitleCacheSize(int titleCacheSize) {
+            this.titleCacheSize = titleCacheSize;
+            return this;
+        }
+
+        /**
+         * Set whether duplicate aliases are dropped, so each distinct alias is written only once.
+         *
+         * @param deduplicationEnabled true to drop duplicate aliases
+         * @return this builder (for method chaining)
+         */
+        public Builder setDeduplicationEnabled(boolean deduplicationEnabled) {
+            this.deduplicationEnabled = deduplicationEnabled;
+            return this;
+        }
+
+        /**
+         * Set the memory used to de-duplicate aliases, before spilling to temporary files.
+         *
+         * @param deduplicationMemoryMB memory budget in megabytes
+         * @return this builder (for method chaining)
+         */
+        public Builder setDeduplicationMemoryMB(int deduplicationMemoryMB) {
+            this.deduplicationMemoryMB = deduplicationMemoryMB;
+            return this;
+        }
+
+        /**
+         * Set whether each distinct alias is written only once, with the number of times it occurs.
+         *
+         * @param aggregationEnabled true to aggregate aliases
+         * @return this builder (for method chaining)
+         */
+        public Builder setAggregationEnabled(boolean aggregationEnabled) {
+            this.aggregationEnabled = aggregationEnabled;
+            return this;
+        }
+
+        /**
+         * Set the memory used to aggregate aliases, before spilling to temporary files.
+         *
+         * @param aggregationMemoryMB memory budget in megabytes
+         * @return this builder (for method chaining)
+         */
+        public Builder setAggregationMemoryMB(int aggregationMemoryMB) {
+            this.aggregationMemoryMB = aggregationMemoryMB;
+            return this;
+        }
+
+        /**
+         * Set the columns to sort the output by, most significant first.
+         *
+         * @param sortKey columns to sort by (or empty for unsorted output)
+         * @return this builder (for method chaining)
+         */
+        public Builder setSortKey(List<WriteTabulatedAliasHandler.Column> sortKey) {
+            this.sortKey = checkNotNull(sortKey, "sortKey");
+            return this;
+        }
+
+        /**
+         * Set the memory used to sort aliases, before spilling to temporary files.
+         *
+         * @param sortMemoryMB memory budget in megabytes
+         * @return this builder (for method chaining)
+         */
+        public Builder setSortMemoryMB(int sortMemoryMB) {
+            this.sortMemoryMB = sortMemoryMB;
+            return this;
+        }
+
+        /**
+         * Set the maximum number of sorted temporary files that are merged at once.
+         *
+         * @param sortMergeWidth maximum number of files merged at once
+         * @return this builder (for method chaining)
+         */
+        public Builder setSortMergeWidth(int sortMergeWidth) {
+            this.sortMergeWidth = sortMergeWidth;
+            return this;
+        }
+
+        /**
+         * Set whether or not aliases are written on a separate thread.
+         *
+         * @param asyncWriteEnabled true to write aliases asynchronously
+         * @return this builder (for method chaining)
+         */
+        public Builder setAsyncWriteEnabled(boolean asyncWriteEnabled) {
+            this.asyncWriteEnabled = asyncWriteEnabled;
+            return this;
+        }
+
+        /**
+         * Set the number of aliases passed to the writer thread at a time.
+         *
+         * @param asyncWriteBatchSize aliases per batch
+         * @return this builder (for method chaining)
+         */
+        public Builder setAsyncWriteBatchSize(int asyncWriteBatchSize) {
+            this.asyncWriteBatchSize = asyncWriteBatchSize;
+            return this;
+        }
+
+        /**
+         * Set the number of batches that may wait to be written before page processing is paused.
+         *
+         * @param asyncWriteMaxPendingBatches maximum number of waiting batches
+         * @return this builder (for method chaining)
+         */
+        public Builder setAsyncWriteMaxPendingBatches(int asyncWriteMaxPendingBatches) {
+            this.asyncWriteMaxPendingBatches = asyncWriteMaxPendingBatches;
+            return this;
+        }
+
         /**
          * @return throw IllegalArgumentException if one of the required arguments is unspecified.
          */
@@ -361,6 +1019,18 @@ public class Main {
             final ImmutableList.Builder<ByteSource> sourcesBuilder = ImmutableList.builder();
 
 
+            File indexedDumpFile = null;
+            if (indexFile != null) {
+                if (!indexFile.isFile() || !indexFile.canRead())
+                    throw new IllegalArgumentException("The index file is not a readable file: " + indexFile);
+                if (inputs.size() != 1)
+                    throw new IllegalArgumentException("Exactly one input is required when an index is given, " +
+                            "but found " + inputs.size());
+                indexedDumpFile = new File(inputs.get(0));
+                if (!indexedDumpFile.isFile() || !indexedDumpFile.canRead())
+                    throw new IllegalArgumentException("The indexed input is not a readable file: " + indexedDumpFile);
+            }
+
             for (final String input : inputs) {
                 try {
                     final URL inputUrl = new URL(input);
@@ -391,19 +1061,162 @@ public class Main {
             }
 
 
-            // Check the output file and setup the sink
+            if (outputBufferKB < 1) {
+                throw new IllegalArgumentException("Output buffer must be at least 1 kilobyte: " + outputBufferKB);
+            }
+
+            if (producedAliasTypes.isEmpty()) {
+                throw new IllegalArgumentException("Produced alias types list is empty.");
+            }
+
+            if (numWorkerThreads < 1) {
+                throw new IllegalArgumentException("Number of worker threads must be at least 1: " + numWorkerThreads);
+            }
+
+            if (producedNamespaces.isEmpty()) {
+                throw new IllegalArgumentException("Produced namespaces list is empty.");
+            }
+
+            final Set<Integer> namespaceIds = Sets.newHashSet();
+            for (String namespace : producedNamespaces) {
+                if (namespace.trim().equals("*")) {
+                    // All namespaces are denoted by the empty set
+                    namespaceIds.clear();
+                    break;
+                }
+                try {
+                    namespaceIds.add(Integer.valueOf(namespace.trim()));
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Namespace is not an integer id: " + namespace, e);
+                }
+            }
+            if (numDecompressionThreads < 1) {
+                throw new IllegalArgumentException("Number of decompression threads must be at least 1: "
+                        + numDecompressionThreads);
+            }
+
+            if (maxAliasWords < 1) {
+                throw new IllegalArgumentException("Maximum words per alias must be at least 1: " + maxAliasWords);
+            }
+
+            if (maxAliasChars < 1) {
+                throw new IllegalArgumentException("Maximum characters per alias must be at least 1: "
+                        + maxAliasChars);
+            }
+
+            if (titleCacheSize < 0) {
+                throw new IllegalArgumentException("Title cache size must not be negative: " + titleCacheSize);
+            }
+
+            if (deduplicationMemoryMB < 1) {
+                throw new IllegalArgumentException("De-duplication memory must be at least 1 megabyte: "
+                        + deduplicationMemoryMB);
+            }
+
+            if (aggregationMemoryMB < 1) {
+                throw new IllegalArgumentException("Aggregation memory must be at least 1 megabyte: "
+                        + aggregationMemoryMB);
+            }
+
+            if (aggregationEnabled && deduplicationEnabled) {
+                throw new IllegalArgumentException("Aggregation and de-duplication can not both be enabled.");
+            }
+
+            if (sortMemoryMB < 1) {
+                throw new IllegalArgumentException("Sort memory must be at least 1 megabyte: " + sortMemoryMB);
+            }
+
+            if (asyncWriteBatchSize < 1) {
+                throw new IllegalArgumentException("Async write batch size must be at least 1: " + asyncWriteBatchSize);
+            }
+
+            if (asyncWriteMaxPendingBatches < 1) {
+                throw new IllegalArgumentException("Async write queue must be at least 1: "
+                        + asyncWriteMaxPendingBatches);
+            }
+
+            if (sortMergeWidth < 2) {
+                throw new IllegalArgumentException("Sort merge ways must be at least 2: " + sortMergeWidth);
+            }
+
+            final EnumSet<WriteTabulatedAliasHandler.Column> columns = EnumSet.copyOf(outputColumns);
+            if (aggregationEnabled && columns.equals(WriteTabulatedAliasHandler.DEFAULT_COLUMNS))
+                columns.add(WriteTabulatedAliasHandler.Column.COUNT);
+
+            // Check the output files and setup the sinks
+            final List<Output> outputs = Lists.newArrayList();
+            final Set<File> outputFiles = Sets.newHashSet();
+            outputs.add(newOutput(outputFile, outputCompression, outputSharding, numOutputShards,
+                    outputFormat, columns, null, outputFiles));
+            for (String spec : additionalOutputs)
+                outputs.add(parseAdditionalOutput(spec, columns, outputFiles));
+
+            final ImmutableList.Builder<TemplateAliasRule> templateAliasRules = ImmutableList.builder();
+            templateAliasRules.addAll(TemplateAliasRules.loadServices());
+            if (templateRulesFile != null) {
+                if (!templateRulesFile.isFile() || !templateRulesFile.canRead())
+                    throw new IllegalArgumentException("The template rules file is not a readable file: "
+                            + templateRulesFile);
+                templateAliasRules.addAll(TemplateAliasRules.read(templateRulesFile));
+            }
+
+            return new Main(
+                    sourcesBuilder.build(),
+                    ImmutableList.copyOf(outputs),
+                    EnumSet.copyOf(producedAliasTypes),
+                    pageLimit,
+                    produceIdentityAliases,
+                    numWorkerThreads,
+                    numDecompressionThreads,
+                    indexedDumpFile,
+                    indexFile,
+                    namespaceIds,
+                    templateAliasRules.build(),
+                    maxAliasWords,
+                    maxAliasChars,
+                    titleCacheSize,
+                    deduplicationEnabled,
+                    (long) deduplicationMemoryMB << 20,
+                    aggregationEnabled,
+                    (long) aggregationMemoryMB << 20,
+                    ImmutableList.copyOf(sortKey),
+                    (long) sortMemoryMB << 20,
+                    sortMergeWidth,
+                    asyncWriteEnabled,
+                    asyncWriteBatchSize,
+                    asyncWriteMaxPendingBatches);
+        }
+
+        /**
+         * Check the given output file (or "-" for stdout) and create a sink that writes to it.
+         */
+        private CharSink newSink(final File outputFile, final OutputCompression requestedCompression)
+                throws IOException {
             final CharSink sink;
+            final boolean stdout = outputFile.toString().equals("-");
+            final OutputCompression compression = requestedCompression != OutputCompression.AUTO
+                    ? requestedCompression
+                    : stdout ? OutputCompression.NONE : OutputCompression.forFile(outputFile);
 
-            if (outputFile.toString().equals("-")) {
+            if (stdout) {
                 // Stdout
                 LOG.log(Level.INFO, "Setting sink to file stdout.");
 
-                sink = new CharSink() {
-                    @Override
-                    public Writer openStream() throws IOException {
-                        return new PrintWriter(System.out);
-                    }
-                };
+                if (compression == OutputCompression.NONE) {
+                    sink = new CharSink() {
+                        @Override
+                        public Writer openStream() throws IOException {
+                            return new PrintWriter(System.out);
+                        }
+                    };
+                } else {
+                    sink = newCompressedSink(new ByteSink() {
+                        @Override
+                        public OutputStream openStream() throws IOException {
+                            return System.out;
+                        }
+                    }, compression);
+                }
             } else {
                 // To a file
 
@@ -438,22 +1251,166 @@ public class Main {
 
                 LOG.log(Level.INFO, "Setting sink to file: " + outputFile);
 
-                sink = Files.asCharSink(outputFile, outputCharset, FILE_WRITE_MODE_TRUNCATE);
+                if (compression != OutputCompression.NONE) {
+                    sink = newCompressedSink(Files.asByteSink(outputFile, FILE_WRITE_MODE_TRUNCATE), compression);
+                } else if (outputCharset.equals(Charsets.UTF_8)) {
+                    // Encode straight to the file channel, bypassing the charset encoder
+                    final int bufferSize = outputBufferKB << 10;
+                    sink = new CharSink() {
+                        @Override
+                        public Writer openStream() throws IOException {
+                            return new Utf8ChannelWriter(new FileOutputStream(outputFile).getChannel(), bufferSize);
+                        }
+                    };
+                } else {
+                    sink = Files.asCharSink(outputFile, outputCharset, FILE_WRITE_MODE_TRUNCATE);
+                }
             }
+            return sink;
+        }
 
+        /**
+         * Parse the specification of an additional output, taking unspecified settings from the main output.
+         */
+        private Output parseAdditionalOutput(final String spec,
+                                             final EnumSet<WriteTabulatedAliasHandler.Column> columns,
+                                             final Set<File> outputFiles) throws IOException {
+            final String[] parts = spec.split(":");
+            if (parts[0].isEmpty())
+                throw new IllegalArgumentException("Additional output file is not given: " + spec);
+
+            OutputFormat format = outputFormat;
+            EnumSet<WriteTabulatedAliasHandler.Column> outColumns = columns;
+            EnumSet<AliasType> types = null;
+            OutputCompression compression = OutputCompression.AUTO;
+            OutputSharding sharding = outputSharding;
+            int numShards = numOutputShards;
+            for (int i = 1; i < parts.length; i++) {
+                final int eq = parts[i].indexOf('=');
+                if (eq == -1)
+                    throw new IllegalArgumentException("Additional output setting is not of the form NAME=VALUE: "
+                            + parts[i] + " in " + spec);
+                final String name = parts[i].substring(0, eq).trim();
+                final String value = parts[i].substring(eq + 1).trim();
+                try {
+                    if (name.equals("format")) {
+                        format = new OutputFormatStringConverter().convert(value);
+                    } else if (name.equals("columns")) {
+                        outColumns = EnumSet.noneOf(WriteTabulatedAliasHandler.Column.class);
+                        for (String column : value.split(","))
+                            outColumns.add(new ColumnStringConverter().convert(column.trim()));
+                    } else if (name.equals("types")) {
+                        types = EnumSet.noneOf(AliasType.class);
+                        for (String type : value.split(","))
+                            types.add(new AliasTypeStringConverter().convert(type.trim()));
+                    } else if (name.equals("compression")) {
+                        compression = new OutputCompressionStringConverter().convert(value);
+                    } else if (name.equals("shardBy")) {
+                        sharding = new OutputShardingStringConverter().convert(value);
+                    } else if (name.equals("shards")) {
+                        numShards = Integer.parseInt(value);
+                    } else {
+                        throw new IllegalArgumentException("Unknown additional output setting: " + name
+                                + " in " + spec);
+                    }
+                } catch (ParameterException e) {
+                    throw new IllegalArgumentException("Invalid additional output setting: " + parts[i]
+                            + " in " + spec, e);
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Invalid additional output setting: " + parts[i]
+                            + " in " + spec, e);
+                }
+            }
+            if (types != null && !producedAliasTypes.containsAll(types))
+                throw new IllegalArgumentException("Additional output types are not all produced: " + spec);
+            return newOutput(new File(parts[0]), compression, sharding, numShards, format, outColumns, types,
+                    outputFiles);
+        }
 
-            if (producedAliasTypes.isEmpty()) {
-                throw new IllegalArgumentException("Produced alias types list is empty.");
+        /**
+         * Check the given output file and create the sink of each shard, named after the file.
+         *
+         * @param outputFiles files of the outputs created so far, to which the new files are added
+         */
+        private Output newOutput(final File file, final OutputCompression compression, final OutputSharding sharding,
+                                 final int numShards, final OutputFormat format,
+                                 final EnumSet<WriteTabulatedAliasHandler.Column> columns,
+                                 final EnumSet<AliasType> types, final Set<File> outputFiles) throws IOException {
+            final List<File> files = Lists.newArrayList();
+            EnumSet<AliasType> outTypes = types;
+            if (sharding != OutputSharding.NONE && file.toString().equals("-"))
+                throw new IllegalArgumentException("Sharded output must be written to a file, not stdout.");
+            switch (sharding) {
+                case NONE:
+                    files.add(file);
+                    break;
+                case TYPE:
+                    if (outTypes == null)
+                        outTypes = EnumSet.copyOf(producedAliasTypes);
+                    for (AliasType type : outTypes)
+                        files.add(shardFile(file, type.name()));
+                    break;
+                case SOURCE:
+                case TARGET:
+                    if (numShards < 1)
+                        throw new IllegalArgumentException("Number of shards must be at least 1: " + numShards);
+                    final int digits = String.valueOf(numShards - 1).length();
+                    for (int i = 0; i < numShards; i++)
+                        files.add(shardFile(file, String.format("%0" + digits + "d", i)));
+                    break;
+                default:
+                    throw new AssertionError(sharding);
             }
 
-            return new Main(
-                    sourcesBuilder.build(),
-                    sink,
-                    EnumSet.copyOf(producedAliasTypes),
-                    pageLimit,
-                    produceIdentityAliases,
-                    outputFormat,
-                    EnumSet.copyOf(outputColumns));
+            final ImmutableList.Builder<CharSink> sinks = ImmutableList.builder();
+            for (File shardFile : files) {
+                if (!outputFiles.add(shardFile.getAbsoluteFile()))
+                    throw new IllegalArgumentException("Output file is given more than once: " + shardFile);
+                sinks.add(newSink(shardFile, compression));
+            }
+            return new Output(sinks.build(), sharding, format, columns, outTypes);
+        }
+
+        /**
+         * Name a shard after the output file, inserting the shard name before the extensions; e.g. the shard "LINK" of
+         * "aliases.tsv.gz" is "aliases-LINK.tsv.gz".
+         */
+        private static File shardFile(final File file, final String shard) {
+            final String name = file.getName();
+            final OutputCompression compression = OutputCompression.forFile(file);
+            final int compressionStart = compression.extension == null
+                    ? name.length()
+                    : name.length() - compression.extension.length();
+            int extensionStart = name.lastIndexOf('.', compressionStart - 1);
+            if (extensionStart <= 0)
+                extensionStart = compressionStart;
+            return new File(file.getParentFile(),
+                    name.substring(0, extensionStart) + "-" + shard + name.substring(extensionStart));
+        }
+
+        /**
+         * Create a sink that compresses the encoded output before writing it to the given byte sink.
+         */
+        private CharSink newCompressedSink(final ByteSink byteSink, final OutputCompression compression) {
+            final CompressorStreamFactory2 compressorFactory = CompressorStreamFactory2.builder().build();
+            final Charset charset = outputCharset;
+            final int bufferSize = outputBufferKB << 10;
+            return new CharSink() {
+                @Override
+                public Writer openStream() throws IOException {
+                    final OutputStream out = byteSink.openBufferedStream();
+                    final OutputStream compressed;
+                    try {
+                        compressed = compressorFactory.createCompressorOutputStream(compression.compressorName, out);
+                    } catch (CompressorException e) {
+                        out.close();
+                        throw new IOException(e);
+                    }
+                    return charset.equals(Charsets.UTF_8)
+                            ? new Utf8ChannelWriter(Channels.newChannel(compressed), bufferSize)
+                            : new OutputStreamWriter(compressed, charset);
+                }
+            };
         }
 
     }
@@ -484,6 +1441,30 @@ public class Main {
 
     }
 
+    public static final class OutputCompressionStringConverter extends EnumStringConverter<OutputCompression> {
+
+        public OutputCompressionStringConverter(String name) {
+            super(name, OutputCompression.class);
+        }
+
+        public OutputCompressionStringConverter() {
+            super(OutputCompression.class);
+        }
+
+    }
+
+    public static final class OutputShardingStringConverter extends EnumStringConverter<OutputSharding> {
+
+        public OutputShardingStringConverter(String name) {
+            super(name, OutputSharding.class);
+        }
+
+        public OutputShardingStringConverter() {
+            super(OutputSharding.class);
+        }
+
+    }
+
     public static final class OutputFormatStringConverter extends EnumStringConverter<OutputFormat> {
 
         public OutputFormatStringConverter(String name) {
@@ -496,6 +1477,18 @@ public class Main {
 
     }
 
+    /**
+     * Passes each value of a list parameter whole, so it may contain commas.
+     */
+    public static final class NonSplitter implements IParameterSplitter {
+
+        @Override
+        public List<String> split(String value) {
+            return Collections.singletonList(value);
+        }
+
+    }
+
     public static class FileOrUrlConverter extends BaseConverter<Object> {
 
         public FileOrUrlConverter(String optionName) {
@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) 2010-2013, University of Sussex
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the University of Sussex nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.ac.susx.tag.wag;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.ByteSource;
+import com.google.common.io.Closer;
+import com.google.common.io.Files;
+import uk.ac.susx.tag.util.CompressorStreamFactory2;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.Arrays;
+
+import static com.google.common.base.Preconditions.checkElementIndex;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * The index of a multi-stream Wikipedia dump, as found in the <tt>pages-articles-multistream-index.txt.bz2</tt> file
+ * that is published along side each <tt>pages-articles-multistream.xml.bz2</tt> dump.
+ * <p/>
+ * Each line of the index has the form <tt>offset:pageId:title</tt>, where offset is the position in the dump of the
+ * BZip2 stream containing the page. Only the distinct stream offsets, and the number of pages in each stream, are
+ * retained. The first stream of the dump (holding the site info header) and the last (holding the closing tag) are
+ * not listed in the index.
+ *
+ * @author Hamish Morgan
+ */
+@Immutable
+@Nonnull
+public final class MultistreamIndex {
+
+    /**
+     * Offset (in bytes from the start of the dump) of each indexed stream, in ascending order.
+     */
+    private final long[] streamOffsets;
+
+    /**
+     * Number of pages contained in the stream at the same index of streamOffsets.
+     */
+    private final int[] streamPageCounts;
+
+    private final long pageCount;
+
+    MultistreamIndex(final long[] streamOffsets, final int[] streamPageCounts) {
+        checkNotNull(streamOffsets, "streamOffsets");
+        checkNotNull(streamPageCounts, "streamPageCounts");
+        if (streamOffsets.length != streamPageCounts.length)
+            throw new IllegalArgumentException("streamOffsets and streamPageCounts have different lengths");
+        this.streamOffsets = streamOffsets;
+        this.streamPageCounts = streamPageCounts;
+        long total = 0;
+        for (int count : streamPageCounts)
+            total += count;
+        this.pageCount = total;
+    }
+
+    /**
+     * Read the index from the given file, which may be compressed.
+     *
+     * @param indexFile multi-stream index file
+     * @return the index
+     * @throws IOException if the file can not be read, or is malformed
+     */
+    public static MultistreamIndex read(final File indexFile) throws IOException {
+        return read(Files.asByteSource(checkNotNull(indexFile, "indexFile")));
+    }
+
+    /**
+     * Read the index from the given source, which may be compressed.
+     *
+     * @param source multi-stream index source
+     * @return the index
+     * @throws IOException if the source can not be read, or is malformed
+     */
+    public static MultistreamIndex read(final ByteSource source) throws IOException {
+        checkNotNull(source, "source");
+
+        final CompressorStreamFactory2 compressorFactory = CompressorStreamFactory2.builder()
+                .setTransparentSignatureDetection(true)
+                .setDecompressConcatenated(true)
+                .build();
+
+        long[] offsets = new long[1024];
+        int[] counts = new int[1024];
+        int nStreams = 0;
+
+        final Closer closer = Closer.create();
+        try {
+            final BufferedReader reader = closer.register(new BufferedReader(new InputStreamReader(
+                    closer.register(compressorFactory.createCompressorInputStream(
+                            closer.register(source.openBufferedStream()))),
+                    Charsets.UTF_8)));
+
+            int lineNumber = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                ++lineNumber;
+                if (line.isEmpty())
+                    continue;
+
+                final int colon = line.indexOf(':');
+                final long offset;
+                try {
+                    offset = colon == -1 ? -1 : Long.parseLong(line.substring(0, colon));
+                } catch (NumberFormatException e) {
+                    throw new IOException("Malformed stream offset at line " + lineNumber + ": " + line, e);
+                }
+                if (offset < 0)
+                    throw new IOException("Malformed index entry at line " + lineNumber + ": " + line);
+
+                if (nStreams > 0 && offset == offsets[nStreams - 1]) {
+                    ++counts[nStreams - 1];
+                } else if (nStreams > 0 && offset < offsets[nStreams - 1]) {
+                    throw new IOException("Stream offsets are not in ascending order at line " + lineNumber);
+                } else {
+                    if (nStreams == offsets.length) {
+                        offsets = Arrays.copyOf(offsets, 2 * nStreams);
+                        counts = Arrays.copyOf(counts, 2 * nStreams);
+                    }
+                    offsets[nStreams] = offset;
+                    counts[nStreams] = 1;
+                    ++nStreams;
+                }
+            }
+        } catch (Throwable t) {
+            throw closer.rethrow(t);
+        } finally {
+            closer.close();
+        }
+
+        return new MultistreamIndex(Arrays.copyOf(offsets, nStreams), Arrays.copyOf(counts, nStreams));
+    }
+
+    /**
+     * @return number of indexed streams
+     */
+    public int getStreamCount() {
+        return streamOffsets.length;
+    }
+
+    /**
+     * @param stream index of the stream
+     * @return offset in bytes, from the start of the dump, of the given stream
+     * @throws IndexOutOfBoundsException if stream is negative, or not less than the stream count
+     */
+    public long getStreamOffset(final int stream) {
+        checkElementIndex(stream, streamOffsets.length, "stream");
+        return streamOffsets[stream];
+    }
+
+    /**
+     * @param stream index of the stream
+     * @return number of pages in the given stream
+     * @throws IndexOutOfBoundsException if stream is negative, or not less than the stream count
+     */
+    public int getStreamPageCount(final int stream) {
+        checkElementIndex(stream, streamPageCounts.length, "stream");
+        return streamPageCounts[stream];
+    }
+
+    /**
+     * @return total number of pages in all the indexed streams
+     */
+    public long getPageCount() {
+        return pageCount;
+    }
+
+    @Override
+    public String toString() {
+        return "MultistreamIndex{streams=" + streamOffsets.length + ", pages=" + pageCount + '}';
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2010-2013, University of Sussex
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the University of Sussex nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.ac.susx.tag.wag;
+
+import java.util.Collection;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * How much of a page must be processed to produce a given set of alias types. Constants are declared in order of
+ * increasing cost, so the content required for a set of types is the greatest required by any one of them.
+ *
+ * @author Hamish Morgan
+ */
+enum PageContent {
+
+    /**
+     * Only the page title is required; the wiki text need not be parsed at all.
+     */
+    TITLE,
+
+    /**
+     * Only the redirect target (if any) is required, which is found at the very start of the wiki text.
+     */
+    REDIRECT,
+
+    /**
+     * Only the lead section, preceding the first heading, is required.
+     */
+    LEAD_SECTION,
+
+    /**
+     * The whole wiki text must be parsed.
+     */
+    FULL_TEXT;
+
+    /**
+     * Get the page content required to produce aliases of the given type.
+     *
+     * @param type alias type
+     * @return content required by that type
+     */
+    static PageContent requiredBy(final AliasType type) {
+        checkNotNull(type, "type");
+        switch (type) {
+            case TITLE:
+                return TITLE;
+            case REDIRECT:
+                return REDIRECT;
+            case P1BOLD:
+            case P2BOLD:
+            case S1BOLD:
+                // Paragraph bold aliases may lie beyond the lead section if it contains fewer paragraphs than
+                // required, in which case the caller must fall back to the full text.
+                return LEAD_SECTION;
+            default:
+                // Links, templates, and truncated variants of them can occur anywhere on the page
+                return FULL_TEXT;
+        }
+    }
+
+    /**
+     * Get the page content required to produce aliases of all the given types.
+     *
+     * @param types alias types
+     * @return content required by the most demanding type
+     */
+    static PageContent requiredBy(final Collection<AliasType> types) {
+        checkNotNull(types, "types");
+        PageContent required = TITLE;
+        for (AliasType type : types) {
+            final PageContent content = requiredBy(type);
+            if (content.compareTo(required) > 0)
+                required = content;
+        }
+        return required;
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2010-2013, University of Sussex
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the University of Sussex nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.ac.susx.tag.wag;
+
+import com.google.common.collect.Sets;
+import org.sweble.wikitext.lazy.preprocessor.Template;
+
+import javax.annotation.concurrent.Immutable;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Handles the <tt>{{Persondata}}</tt> info-box found in articles about people. Each of the listed
+ * <tt>ALTERNATIVE NAMES</tt> is produced as a {@link AliasType#PERSON_ALT_NAME} alias of the page title, along with
+ * re-ordered variants of comma separated names (e.g "Augustine, Saint, Bishop of Hippo" also produces
+ * "Saint Augustine".)
+ *
+ * @author Hamish Morgan
+ */
+@Immutable
+final class PersondataTemplateHandler implements TemplateHandler {
+
+    @Override
+    public void handle(AliasAstVisitor visitor, Template template, String templateName) {
+        final Map<String, String> data = visitor.getNamedData(template);
+
+        if (!data.containsKey("NAME") || !data.containsKey("ALTERNATIVE NAMES"))
+            return;
+
+        String name = data.get("NAME");
+        String altNames = data.get("ALTERNATIVE NAMES");
+
+        for (Map.Entry<String, String> e : data.entrySet())
+            if (e.getKey().equalsIgnoreCase("NAME")) {
+                name = e.getValue();
+            } else if (e.getKey().equalsIgnoreCase("ALTERNATIVE NAMES")) {
+                altNames = e.getValue();
+            }
+
+        if (name == null || name.isEmpty() || altNames == null || altNames.isEmpty())
+            return;
+
+        final Set<String> names = Sets.newHashSet();
+        names.add(name.trim());
+        int i = name.lastIndexOf(',');
+        int j;
+        if (-1 != i) {
+            names.add(name.substring(i + 1).trim() + " " + name.substring(0, i).trim());
+        }
+
+        for (String alt : altNames.split(";")) {
+            i = alt.lastIndexOf('(');
+            if (-1 != i)
+                alt = alt.substring(0, i);
+            alt = alt.trim();
+
+            if (alt.isEmpty())
+                continue;
+
+            names.add(alt);
+
+            i = alt.indexOf(',');
+            if (-1 != i) {
+                // If there's a second comma then everything after it is titles
+                //  E.g: Augustine, Saint, Bishop of Hippo
+                j = alt.indexOf(',', i + 1);
+                if (-1 != j) {
+                    // Augustine, Saint
+                    names.add(alt.substring(0, j).trim());
+                    // Bishop of Hippo
+                    names.add(alt.substring(j + 1).trim());
+                    // Saint Augustine
+                    names.add(alt.substring(i + 1, j).trim() + " " + alt.substring(0, i).trim());
+                    // Saint Augustine, Bishop of Hippo
+                    names.add(alt.substring(i + 1, j).trim()
+                            + " " + alt.substring(0, i).trim()
+                            + ", " + alt.substring(j + 1).trim());
+                } else {
+                    names.add(alt.substring(i + 1).trim() + " " + alt.substring(0, i).trim());
+                }
+            }
+        }
+
+        for (String x : names) {
+            visitor.addAlias(AliasType.PERSON_ALT_NAME, Alias.NO_SUBTYPE, x, visitor.getPageTitle());
+        }
+    }
+
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2010-2013, University of Sussex
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the University of Sussex nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.ac.susx.tag.wag;
+
+import javax.annotation.Nullable;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Recognises simple redirect pages directly from their wiki text, so they can be processed without building a Sweble
+ * AST.
+ * <p/>
+ * A page is only recognised when the AST route would be guaranteed to produce nothing but the redirect itself (and the
+ * page title.) That is, the text is a <tt>#REDIRECT [[target]]</tt> link, with a target made of legal title
+ * characters, followed by text that contains no further links, bold or italic markup, tags, or templates other than
+ * the redirect categories (e.g <tt>{{R from CamelCase}}</tt>.) Anything else is left to the parser.
+ *
+ * @author Hamish Morgan
+ */
+final class RedirectRecogniser {
+
+    /**
+     * Redirect link at the start of the page. The target is restricted to legal MediaWiki title characters (plus the
+     * section separator), and the optional label to text that cannot contain markup.
+     */
+    private static final Pattern REDIRECT = Pattern.compile(
+            "^[ \\t\\r\\n]*#REDIRECT[ \\t\\r\\n]*\\[\\[" +
+                    "([ %!\"$&'()*,\\-./0-9:;=?@A-Z\\\\^_`a-z~+#\\u00A1-\\uFFFF]+)" +
+                    "(?:\\|[^\\[\\]{}<>|'\\r\\n]*)?" +
+                    "\\]\\]",
+            Pattern.CASE_INSENSITIVE);
+
+    /**
+     * Markup following the redirect link that could produce aliases of it's own.
+     */
+    private static final Pattern UNSAFE_MARKUP = Pattern.compile("\\[\\[|''|<|\\{\\{\\{");
+
+    /**
+     * Template names, in the text following the redirect link.
+     */
+    private static final Pattern TEMPLATE_NAME = Pattern.compile("\\{\\{([^{}|]*)");
+
+    private RedirectRecogniser() {
+    }
+
+    /**
+     * Get whether the given wiki text could possibly be a redirect. Sweble only recognises the redirect directive at
+     * the very start of the text (after white space), so if this returns false the page is definitely not a redirect.
+     *
+     * @param wikiText the page text
+     * @return false if the text is not a redirect, true if it might be
+     */
+    static boolean mayBeRedirect(final CharSequence wikiText) {
+        checkNotNull(wikiText, "wikiText");
+        for (int i = 0; i < wikiText.length(); i++) {
+            if (!Character.isWhitespace(wikiText.charAt(i)))
+                return wikiText.charAt(i) == '#';
+        }
+        return false;
+    }
+
+    /**
+     * Get the target of the given redirect wiki text, ignoring whatever follows the redirect link. This is only
+     * useful when nothing but the redirect is required from the page.
+     *
+     * @param wikiText the page text
+     * @return redirect target, or null if the text does not start with a simple redirect link
+     */
+    @Nullable
+    static String findLinkTarget(final CharSequence wikiText) {
+        checkNotNull(wikiText, "wikiText");
+        final Matcher redirect = REDIRECT.matcher(wikiText);
+        return redirect.lookingAt() ? redirect.group(1) : null;
+    }
+
+    /**
+     * Get the target of the given redirect wiki text, if it is simple enough to be processed without parsing.
+     *
+     * @param wikiText         the page text
+     * @param templateHandlers handlers of the templates that produce aliases
+     * @return redirect target, or null if the text is not a simple redirect
+     */
+    @Nullable
+    static String findTarget(final CharSequence wikiText, final TemplateHandlers templateHandlers) {
+        checkNotNull(wikiText, "wikiText");
+        checkNotNull(templateHandlers, "templateHandlers");
+
+        final Matcher redirect = REDIRECT.matcher(wikiText);
+        if (!redirect.lookingAt())
+            return null;
+
+        final CharSequence remainder = wikiText.subSequence(redirect.end(), wikiText.length());
+        if (UNSAFE_MARKUP.matcher(remainder).find())
+            return null;
+
+        final Matcher template = TEMPLATE_NAME.matcher(remainder);
+        while (template.find()) {
+            final String name = TemplateHandlers.normalise(template.group(1));
+            if (!isRedirectCategoryTemplate(name) || templateHandlers.get(name) != null)
+                return null;
+        }
+
+        return redirect.group(1);
+    }
+
+    /**
+     * Whether the given template name is one of the redirect category templates, which are not used to produce
+     * aliases. These are named "R from ...", "R to ..." etc, or are one of the wrappers used to group them.
+     */
+    private static boolean isRedirectCategoryTemplate(final String name) {
+        return name.startsWith("r ")
+                || name.equals("redirect category shell")
+                || name.equals("rcat shell")
+                || name.equals("this is a redirect");
+    }
+}
@@ -0,0 +1,112 @@
+package uk.ac.susx.tag.wag;
+
+import com.google.common.collect.Maps;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * ReorderBuffer restores the original order of items that are processed concurrently, and so may complete in any
+ * order.
+ * <p/>
+ * A single producer thread assigns each item a sequence number by calling {@link #nextSequence()}. Any thread may then
+ * {@link #complete(long, Object)} that item, once it has been processed. Items are passed to {@link #release(Object)}
+ * strictly in sequence order; completed items that arrive early are held until all their predecessors have been
+ * released.
+ * <p/>
+ * The number of items that have been given a sequence number but not yet released is bounded by the window size.
+ * When the window is full {@link #nextSequence()} blocks, so a single slow item can not cause an unbounded number of
+ * completed items to accumulate in memory.
+ * <p/>
+ * Calls to {@link #release(Object)} are serialized, but may occur on any thread that calls
+ * {@link #complete(long, Object)}.
+ *
+ * @param <T> type of item being reordered
+ * @author Hamish Morgan
+ */
+@ThreadSafe
+abstract class ReorderBuffer<T> {
+
+    /**
+     * Permits for each sequence number that can be issued before the oldest item must be released.
+     */
+    private final Semaphore window;
+
+    /**
+     * Completed items that are waiting for a predecessor to be released; keyed on sequence number.
+     */
+    private final Map<Long, T> pending = Maps.newHashMap();
+
+    /**
+     * Next sequence number to issue. Only accessed by the producer thread.
+     */
+    private long nextSequence = 0;
+
+    /**
+     * Sequence number of the next item to be released. Guarded by this.
+     */
+    private long nextRelease = 0;
+
+    /**
+     * @param windowSize maximum number of items that can be issued a sequence number but not yet released
+     * @throws IllegalArgumentException if windowSize is less than 1
+     */
+    protected ReorderBuffer(final int windowSize) {
+        checkArgument(windowSize >= 1, "windowSize < 1");
+        window = new Semaphore(windowSize);
+    }
+
+    /**
+     * Issue the next sequence number, blocking until there is room in the window. Must only be called by the producer
+     * thread.
+     *
+     * @return sequence number of the next item
+     * @throws InterruptedException if the thread is interrupted while waiting for room in the window
+     */
+    long nextSequence() throws InterruptedException {
+        window.acquire();
+        return nextSequence++;
+    }
+
+    /**
+     * Mark the item with the given sequence number as completed, releasing it (and any waiting successors) if all
+     * its predecessors have already been released.
+     * <p/>
+     * Every issued sequence number must be completed exactly once, even if processing fails, otherwise the buffer will
+     * stall.
+     *
+     * @param sequence number issued by {@link #nextSequence()}
+     * @param item     the processed item
+     * @throws NullPointerException     if item is null
+     * @throws IllegalArgumentException if sequence has already been completed
+     */
+    synchronized void complete(final long sequence, final T item) {
+        checkNotNull(item, "item");
+        checkArgument(sequence >= nextRelease && !pending.containsKey(sequence),
+                "sequence %s has already been completed", sequence);
+
+        pending.put(sequence, item);
+
+        T next;
+        while ((next = pending.remove(nextRelease)) != null) {
+            ++nextRelease;
+            try {
+                release(next);
+            } finally {
+                window.release();
+            }
+        }
+    }
+
+    /**
+     * Called, in sequence order, with each completed item.
+     *
+     * @param item next item in sequence
+     */
+    protected abstract void release(T item);
+
+}
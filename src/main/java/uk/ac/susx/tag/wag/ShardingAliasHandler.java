@@ -0,0 +1,254 @@
+/*
+ * Copyright (c) 2010-2013, University of Sussex
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the University of Sussex nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.ac.susx.tag.wag;
+
+import com.google.common.io.Closer;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * An <tt>AliasHandler</tt> which partitions aliases between a number of shards, so each can be written to it's own
+ * output and later processed in parallel. Aliases are partitioned either by type, or by a hash of their source or
+ * target text (see {@link #shardOf(String, int)}.) Each shard receives it's aliases in the order they were produced.
+ *
+ * @author Hamish Morgan
+ */
+@NotThreadSafe
+public class ShardingAliasHandler implements BatchAliasHandler, Flushable, Closeable {
+
+    private enum Key {
+        TYPE,
+        SOURCE,
+        TARGET
+    }
+
+    private final Key key;
+
+    /**
+     * Handler of each shard; indexed by type ordinal when partitioning by type, and so may contain nulls.
+     */
+    private final AliasHandler[] shards;
+
+    /**
+     * Reusable batch of the aliases bound for each shard.
+     */
+    private final AliasBatch[] shardBatches;
+
+    /**
+     * Cursor of the last batch handled, kept for reuse.
+     */
+    private AliasBatch.Cursor cursor = null;
+
+    private ShardingAliasHandler(Key key, AliasHandler[] shards) {
+        this.key = key;
+        this.shards = shards;
+        shardBatches = new AliasBatch[shards.length];
+        for (int i = 0; i < shards.length; i++)
+            if (shards[i] != null)
+                shardBatches[i] = new AliasBatch();
+    }
+
+    /**
+     * Construct a new handler that passes the aliases of each type to a different shard.
+     *
+     * @param shards handler for the aliases of each type
+     * @return new handler
+     * @throws IllegalArgumentException if shards is empty
+     */
+    public static ShardingAliasHandler byType(Map<AliasType, ? extends AliasHandler> shards) {
+        checkNotNull(shards, "shards");
+        checkArgument(!shards.isEmpty(), "shards is empty");
+        final AliasHandler[] byOrdinal = new AliasHandler[AliasType.values().length];
+        for (Map.Entry<AliasType, ? extends AliasHandler> shard : shards.entrySet())
+            byOrdinal[shard.getKey().ordinal()] = checkNotNull(shard.getValue(), "shard");
+        return new ShardingAliasHandler(Key.TYPE, byOrdinal);
+    }
+
+    /**
+     * Construct a new handler that partitions aliases between the shards by a hash of their source.
+     *
+     * @param shards handler of each partition
+     * @return new handler
+     * @throws IllegalArgumentException if shards is empty
+     */
+    public static ShardingAliasHandler bySource(List<? extends AliasHandler> shards) {
+        return new ShardingAliasHandler(Key.SOURCE, toArray(shards));
+    }
+
+    /**
+     * Construct a new handler that partitions aliases between the shards by a hash of their target.
+     *
+     * @param shards handler of each partition
+     * @return new handler
+     * @throws IllegalArgumentException if shards is empty
+     */
+    public static ShardingAliasHandler byTarget(List<? extends AliasHandler> shards) {
+        return new ShardingAliasHandler(Key.TARGET, toArray(shards));
+    }
+
+    private static AliasHandler[] toArray(List<? extends AliasHandler> shards) {
+        checkNotNull(shards, "shards");
+        checkArgument(!shards.isEmpty(), "shards is empty");
+        final AliasHandler[] array = shards.toArray(new AliasHandler[shards.size()]);
+        for (AliasHandler shard : array)
+            checkNotNull(shard, "shard");
+        return array;
+    }
+
+    /**
+     * Get the partition of the given text, when partitioning by a hash of the source or target. This is
+     * <tt>(text.hashCode() &amp; 0x7fffffff) % numShards</tt>, so it can be reproduced by consumers of the shards.
+     *
+     * @param text      alias source or target
+     * @param numShards number of partitions
+     * @return partition of the text, from 0 to numShards - 1
+     */
+    public static int shardOf(String text, int numShards) {
+        checkArgument(numShards >= 1, "numShards < 1");
+        return (text.hashCode() & Integer.MAX_VALUE) % numShards;
+    }
+
+    @Override
+    public void handle(Alias alias) {
+        checkNotNull(alias, "alias");
+        final int shard;
+        switch (key) {
+            case TYPE:
+                shard = typeShard(alias.getType());
+                break;
+            case SOURCE:
+                shard = shardOf(alias.getSource(), shards.length);
+                break;
+            case TARGET:
+                shard = shardOf(alias.getTarget(), shards.length);
+                break;
+            default:
+                throw new AssertionError(key);
+        }
+        shards[shard].handle(alias);
+    }
+
+    @Override
+    public void handleAll(AliasBatch batch) {
+        checkNotNull(batch, "batch");
+        try {
+            // Copy each run of aliases bound for the same shard
+            cursor = batch.cursor(cursor);
+            int runStart = 0;
+            int runShard = -1;
+            while (cursor.next()) {
+                final int shard;
+                switch (key) {
+                    case TYPE:
+                        shard = typeShard(cursor.getType());
+                        break;
+                    case SOURCE:
+                        shard = hashShard(cursor.getChars(), cursor.getSourceStart(), cursor.getSourceEnd());
+                        break;
+                    case TARGET:
+                        shard = hashShard(cursor.getChars(), cursor.getTargetStart(), cursor.getTargetEnd());
+                        break;
+                    default:
+                        throw new AssertionError(key);
+                }
+                if (shard != runShard) {
+                    if (runShard != -1)
+                        shardBatches[runShard].addAll(batch, runStart, cursor.getIndex());
+                    runStart = cursor.getIndex();
+                    runShard = shard;
+                }
+            }
+            if (runShard != -1)
+                shardBatches[runShard].addAll(batch, runStart, batch.size());
+
+            for (int i = 0; i < shards.length; i++)
+                if (shardBatches[i] != null && !shardBatches[i].isEmpty())
+                    shardBatches[i].forwardTo(shards[i]);
+        } finally {
+            for (AliasBatch shardBatch : shardBatches)
+                if (shardBatch != null)
+                    shardBatch.clear();
+        }
+    }
+
+    private int typeShard(AliasType type) {
+        if (shards[type.ordinal()] == null)
+            throw new IllegalArgumentException("No shard for alias type: " + type);
+        return type.ordinal();
+    }
+
+    /**
+     * Equivalent to {@link #shardOf(String, int)}, for text held in a character array.
+     */
+    private int hashShard(char[] chars, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++)
+            hash = 31 * hash + chars[i];
+        return (hash & Integer.MAX_VALUE) % shards.length;
+    }
+
+    /**
+     * Flush every shard, even if some of them fail; the first failure is then thrown.
+     */
+    @Override
+    public void flush() throws IOException {
+        IOException failure = null;
+        for (AliasHandler shard : shards) {
+            if (shard instanceof Flushable) {
+                try {
+                    ((Flushable) shard).flush();
+                } catch (IOException e) {
+                    if (failure == null)
+                        failure = e;
+                }
+            }
+        }
+        if (failure != null)
+            throw failure;
+    }
+
+    @Override
+    public void close() throws IOException {
+        final Closer closer = Closer.create();
+        for (AliasHandler shard : shards)
+            if (shard instanceof Closeable)
+                closer.register((Closeable) shard);
+        closer.close();
+    }
+}
@@ -0,0 +1,235 @@
+/*
+ * Copyright (c) 2010-2013, University of Sussex
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the University of Sussex nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.ac.susx.tag.wag;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * An <tt>AliasHandler</tt> which forwards all aliases sorted by the values of one or more output columns. Aliases with
+ * equal keys are forwarded in the order they were received. The sorted order can only be known once every alias has
+ * been seen, so aliases are forwarded when the handler is closed.
+ * <p/>
+ * Types and text are ordered by the bytes of their UTF-8 encoding, as written to the output (so the same as
+ * <tt>LC_ALL=C sort</tt>), and counts by value (as <tt>sort -n</tt>.)
+ * <p/>
+ * Aliases are collected in memory. When the (approximate) memory budget is exceeded they are sorted and spilled to a
+ * run file on disk, and the runs are merged when the handler is closed, using an {@link ExternalAliasSorter}.
+ *
+ * @author Hamish Morgan
+ */
+@NotThreadSafe
+public class SortingAliasHandler extends ForwardingAliasHandler {
+
+    public static final long DEFAULT_MEMORY_BUDGET = 256L * 1024 * 1024;
+
+    public static final int DEFAULT_MERGE_WIDTH = ExternalAliasSorter.DEFAULT_MERGE_WIDTH;
+
+    /**
+     * Approximate number of bytes used by each alias in memory, in addition to the characters of it's strings.
+     */
+    private static final int ALIAS_OVERHEAD_BYTES = 192;
+
+    private final Comparator<Alias> order;
+
+    private final long memoryBudget;
+
+    private final List<Alias> buffer = Lists.newArrayList();
+
+    private long memoryUsed = 0;
+
+    private final ExternalAliasSorter sorter;
+
+    private boolean finished = false;
+
+    /**
+     * Construct a new sorting handler, which spills to the default temporary directory.
+     *
+     * @param delegate     handler that the sorted aliases are forwarded to
+     * @param sortKey      columns to sort by, most significant first
+     * @param memoryBudget approximate maximum number of bytes to hold in memory
+     * @param mergeWidth   maximum number of runs that are merged at once
+     * @throws IllegalArgumentException if sortKey is empty, memoryBudget is not positive, or mergeWidth is less than 2
+     */
+    public SortingAliasHandler(AliasHandler delegate, List<WriteTabulatedAliasHandler.Column> sortKey,
+                               long memoryBudget, int mergeWidth) {
+        this(delegate, sortKey, memoryBudget, mergeWidth, new File(System.getProperty("java.io.tmpdir")));
+    }
+
+    /**
+     * @param delegate      handler that the sorted aliases are forwarded to
+     * @param sortKey       columns to sort by, most significant first
+     * @param memoryBudget  approximate maximum number of bytes to hold in memory
+     * @param mergeWidth    maximum number of runs that are merged at once
+     * @param tempDirectory directory in which to create run files
+     * @throws IllegalArgumentException if sortKey is empty, memoryBudget is not positive, or mergeWidth is less than 2
+     */
+    public SortingAliasHandler(AliasHandler delegate, List<WriteTabulatedAliasHandler.Column> sortKey,
+                               long memoryBudget, int mergeWidth, File tempDirectory) {
+        super(delegate);
+        checkArgument(memoryBudget > 0, "memoryBudget <= 0");
+        this.order = orderBy(sortKey);
+        this.memoryBudget = memoryBudget;
+        this.sorter = new ExternalAliasSorter(order, false, mergeWidth,
+                checkNotNull(tempDirectory, "tempDirectory"), "wag-sort-");
+    }
+
+    /**
+     * Get an order of aliases by the values of the given columns, most significant first. Types (by name) and text are
+     * in UTF-8 byte order, and counts in numeric order.
+     *
+     * @param sortKey columns to order by
+     * @return alias order
+     * @throws IllegalArgumentException if sortKey is empty
+     */
+    static Comparator<Alias> orderBy(final List<WriteTabulatedAliasHandler.Column> sortKey) {
+        checkNotNull(sortKey, "sortKey");
+        checkArgument(!sortKey.isEmpty(), "sortKey is empty");
+        final List<WriteTabulatedAliasHandler.Column> columns = ImmutableList.copyOf(sortKey);
+        return new Comparator<Alias>() {
+            @Override
+            public int compare(Alias a, Alias b) {
+                for (WriteTabulatedAliasHandler.Column column : columns) {
+                    final int cmp;
+                    switch (column) {
+                        case TYPE:
+                            cmp = compareUtf8(a.getType().toString(), b.getType().toString());
+                            break;
+                        case COUNT:
+                            cmp = a.getCount() < b.getCount() ? -1 : a.getCount() > b.getCount() ? 1 : 0;
+                            break;
+                        case SUBTYPE:
+                        case SOURCE:
+                        case TARGET:
+                            cmp = compareUtf8((String) column.getValue(a), (String) column.getValue(b));
+                            break;
+                        default:
+                            throw new AssertionError(column);
+                    }
+                    if (cmp != 0)
+                        return cmp;
+                }
+                return 0;
+            }
+        };
+    }
+
+    /**
+     * Compare strings in the order of their UTF-8 encodings; i.e. by code point. This only differs from
+     * {@link String#compareTo(String)} for supplementary characters, whose surrogates sort before the characters from
+     * U+E000 to U+FFFF in UTF-16, but after them in UTF-8.
+     */
+    static int compareUtf8(final String a, final String b) {
+        final int n = Math.min(a.length(), b.length());
+        for (int i = 0; i < n; i++) {
+            int ca = a.charAt(i);
+            int cb = b.charAt(i);
+            if (ca != cb) {
+                if (ca >= Character.MIN_SURROGATE && cb >= Character.MIN_SURROGATE) {
+                    // Move the surrogates above the rest of the basic multilingual plane
+                    ca += ca >= 0xE000 ? -0x800 : 0x2000;
+                    cb += cb >= 0xE000 ? -0x800 : 0x2000;
+                }
+                return ca - cb;
+            }
+        }
+        return a.length() - b.length();
+    }
+
+    @Override
+    public void handle(Alias alias) {
+        checkNotNull(alias, "alias");
+        if (finished)
+            throw new IllegalStateException("Aliases have already been forwarded.");
+
+        buffer.add(alias);
+        memoryUsed += ALIAS_OVERHEAD_BYTES + 2 * (alias.getSubType().length()
+                + alias.getSource().length() + alias.getTarget().length());
+        if (memoryUsed >= memoryBudget) {
+            try {
+                spill();
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to spill aliases to disk.", e);
+            }
+        }
+    }
+
+    /**
+     * Forward the sorted aliases, then close the delegate.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            if (!finished) {
+                finished = true;
+                if (!sorter.hasRuns()) {
+                    // Collections.sort is stable
+                    Collections.sort(buffer, order);
+                    for (Alias alias : buffer)
+                        super.handle(alias);
+                } else {
+                    if (!buffer.isEmpty())
+                        spill();
+                    sorter.merge(new AliasHandler() {
+                        @Override
+                        public void handle(Alias alias) {
+                            SortingAliasHandler.super.handle(alias);
+                        }
+                    });
+                }
+            }
+        } finally {
+            try {
+                sorter.delete();
+            } finally {
+                buffer.clear();
+                super.close();
+            }
+        }
+    }
+
+    private void spill() throws IOException {
+        Collections.sort(buffer, order);
+        sorter.addRun(buffer);
+        buffer.clear();
+        memoryUsed = 0;
+    }
+}
@@ -32,6 +32,8 @@ package uk.ac.susx.tag.wag;
 
 import com.google.common.base.CharMatcher;
 
+import java.util.Arrays;
+
 import static com.google.common.base.Preconditions.checkNotNull;
 
 /**
@@ -44,6 +46,21 @@ import static com.google.common.base.Preconditions.checkNotNull;
  */
 public class SpaceTrimmingAliasHandlerAdapter extends ForwardingAliasHandler {
 
+    /**
+     * Reused to collect the trimmed aliases of each batch.
+     */
+    private final AliasBatch trimmed = new AliasBatch();
+
+    /**
+     * Cursor of the last batch handled, kept for reuse.
+     */
+    private AliasBatch.Cursor cursor = null;
+
+    /**
+     * Reusable buffer into which text is stripped.
+     */
+    private char[] stripped = new char[256];
+
     public SpaceTrimmingAliasHandlerAdapter(AliasHandler delegate) {
         super(delegate);
     }
@@ -51,23 +68,94 @@ public class SpaceTrimmingAliasHandlerAdapter extends ForwardingAliasHandler {
     @Override
     public void handle(Alias alias) throws NullPointerException {
         checkNotNull(alias, "alias");
+        final Alias result = trim(alias);
+        if (result != null)
+            super.handle(result);
+    }
+
+    @Override
+    public void handleAll(AliasBatch batch) {
+        checkNotNull(batch, "batch");
+        try {
+            // Strip the source and target straight from the batch, one after the other, with the same result as
+            // trim(Alias)
+            cursor = batch.cursor(cursor);
+            while (cursor.next()) {
+                final int sourceLength = strip(cursor.getChars(), cursor.getSourceStart(), cursor.getSourceEnd(), 0);
+                if (sourceLength == 0)
+                    continue;
+                final int targetLength = strip(cursor.getChars(), cursor.getTargetStart(), cursor.getTargetEnd(),
+                        sourceLength);
+                if (targetLength == 0)
+                    continue;
+                trimmed.add(cursor.getType(), cursor.getSubType(), stripped, 0, sourceLength,
+                        sourceLength, sourceLength + targetLength, cursor.getCount());
+            }
+            if (!trimmed.isEmpty())
+                forwardAll(trimmed);
+        } finally {
+            trimmed.clear();
+        }
+    }
 
+    /**
+     * @return trimmed alias, or null if it should be dropped
+     */
+    private static Alias trim(Alias alias) {
         final String sourceStripped = strip(alias.getSource());
         if (sourceStripped.isEmpty())
-            return;
+            return null;
 
-        final String targetStripped = strip(alias.getSource());
+        final String targetStripped = strip(alias.getTarget());
         if (targetStripped.isEmpty())
-            return;
+            return null;
 
-        super.handle(new Alias(
+        return new Alias(
                 alias.getType(),
                 alias.getSubType(),
                 sourceStripped,
-                targetStripped));
+                targetStripped,
+                alias.getCount());
     }
 
     private static String strip(CharSequence str) {
         return CharMatcher.WHITESPACE.trimAndCollapseFrom(str, ' ').trim();
     }
+
+    /**
+     * Strip the given range of characters into the stripped buffer, from the given offset, in the same way as
+     * {@link #strip(CharSequence)}. The buffer before the offset is kept.
+     *
+     * @return length of the stripped text
+     */
+    private int strip(char[] chars, int start, int end, int offset) {
+        if (stripped.length < offset + end - start)
+            stripped = Arrays.copyOf(stripped, Math.max(offset + end - start, 2 * stripped.length));
+
+        // Trim and collapse white-space
+        int length = offset;
+        boolean inSpace = false;
+        for (int i = start; i < end; i++) {
+            final char c = chars[i];
+            if (CharMatcher.WHITESPACE.matches(c)) {
+                inSpace = length > offset;
+            } else {
+                if (inSpace) {
+                    stripped[length++] = ' ';
+                    inSpace = false;
+                }
+                stripped[length++] = c;
+            }
+        }
+
+        // Then trim control characters, as String.trim() does
+        int from = offset;
+        while (from < length && stripped[from] <= ' ')
+            ++from;
+        while (length > from && stripped[length - 1] <= ' ')
+            --length;
+        if (from > offset)
+            System.arraycopy(stripped, from, stripped, offset, length - from);
+        return length - from;
+    }
 }
@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2010-2013, University of Sussex
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the University of Sussex nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.ac.susx.tag.wag;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Service provider interface for rules that extract aliases from templates, in addition to (or instead of) the
+ * templates that are handled by default.
+ * <p/>
+ * Rules are collected once, before processing begins, and compiled into an immutable lookup table from template name
+ * to rule, which is shared by all threads. Consequently rules must be thread safe, and should be stateless. Rules can
+ * be read from a data file using {@link TemplateAliasRules#read(java.io.File)}, or implemented in Java and discovered
+ * using {@link java.util.ServiceLoader}; i.e by listing the implementing class in the resource
+ * <tt>META-INF/services/uk.ac.susx.tag.wag.TemplateAliasRule</tt>.
+ *
+ * @author Hamish Morgan
+ * @see TemplateAliasRules
+ */
+public interface TemplateAliasRule {
+
+    /**
+     * Get the names of the templates this rule applies to. Names are matched case insensitively, and replace any
+     * other handler of the same name.
+     *
+     * @return template names
+     */
+    Set<String> getTemplateNames();
+
+    /**
+     * Get the type of aliases that this rule produces. When this type is produced, every page is parsed in full so
+     * the rule sees all occurrences of it's templates.
+     *
+     * @return alias type
+     */
+    AliasType getAliasType();
+
+    /**
+     * Extract aliases from an occurrence of one of the templates. Aliases passed to the handler are treated the same
+     * as those from the standard templates; for example they are dropped if their type is not produced, and truncated
+     * variants are produced when enabled.
+     *
+     * @param templateName normalised (lower case) template name
+     * @param pageTitle    title of the page that contains the template
+     * @param args         text of the value of each template argument, in order
+     * @param aliases      handler to pass aliases to
+     */
+    void apply(String templateName, String pageTitle, List<String> args, AliasHandler aliases);
+
+}
@@ -0,0 +1,204 @@
+/*
+ * Copyright (c) 2010-2013, University of Sussex
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the University of Sussex nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.ac.susx.tag.wag;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Function;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.io.CharSource;
+import com.google.common.io.Files;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.ServiceLoader;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Static utility class for obtaining {@link TemplateAliasRule}s, either from a data file or from service providers.
+ * <p/>
+ * The data file is UTF-8 text, with one rule per line. Blank lines, and lines starting with <tt>#</tt>, are ignored.
+ * Each rule consists of four tab separated fields:
+ * <ol>
+ * <li>Template names, separated by <tt>|</tt> characters.</li>
+ * <li>The {@link AliasType} produced.</li>
+ * <li>The arguments that are page links, as comma separated indices counting from 1. Each element may be a single
+ * index (<tt>2</tt>), a range (<tt>2-4</tt>), or an open range (<tt>2-</tt>) that includes all remaining
+ * arguments.</li>
+ * <li>The direction of the aliases produced: <tt>to-title</tt> if each link is an alias of the page title, or
+ * <tt>from-title</tt> if the page title is an alias of each link.</li>
+ * </ol>
+ * For example, where each <tt>\t</tt> stands for a tab character:
+ * <pre>
+ * # names\ttype\tlinks\tdirection
+ * Other uses4|Other uses5\tHAT_NOTE\t1-\tto-title
+ * About2\tHAT_NOTE\t3,5,7\tfrom-title
+ * </pre>
+ *
+ * @author Hamish Morgan
+ */
+public final class TemplateAliasRules {
+
+    private static final char COMMENT_PREFIX = '#';
+
+    private static final Splitter FIELD_SPLITTER = Splitter.on('\t').trimResults();
+
+    private static final Splitter NAME_SPLITTER = Splitter.on('|').trimResults().omitEmptyStrings();
+
+    private static final Splitter LINKS_SPLITTER = Splitter.on(',').trimResults().omitEmptyStrings();
+
+    private static final String LINKS_TO_TITLE = "to-title";
+
+    private static final String LINKS_FROM_TITLE = "from-title";
+
+    /**
+     * Private constructor (Static utility class should not be instantiated.)
+     *
+     * @throws UnsupportedOperationException always
+     */
+    private TemplateAliasRules() throws UnsupportedOperationException {
+        throw new UnsupportedOperationException("Static utility class should not be instantiated.");
+    }
+
+    /**
+     * Get all the rules provided by implementations of {@link TemplateAliasRule} that are registered as services on
+     * the class path.
+     *
+     * @return rules from service providers
+     * @throws java.util.ServiceConfigurationError if a provider could not be loaded
+     */
+    public static List<TemplateAliasRule> loadServices() {
+        return ImmutableList.copyOf(ServiceLoader.load(TemplateAliasRule.class));
+    }
+
+    /**
+     * Read the rules defined in the given data file.
+     *
+     * @param rulesFile file to read
+     * @return rules defined in the file
+     * @throws IOException if the file could not be read or is malformed
+     */
+    public static List<TemplateAliasRule> read(final File rulesFile) throws IOException {
+        checkNotNull(rulesFile, "rulesFile");
+        return read(Files.asCharSource(rulesFile, Charsets.UTF_8));
+    }
+
+    /**
+     * Read the rules defined in the given data source.
+     *
+     * @param source data to read
+     * @return rules defined in the source
+     * @throws IOException if the source could not be read or is malformed
+     */
+    public static List<TemplateAliasRule> read(final CharSource source) throws IOException {
+        checkNotNull(source, "source");
+        final List<TemplateAliasRule> rules = Lists.newArrayList();
+        int lineNumber = 0;
+        for (String line : source.readLines()) {
+            ++lineNumber;
+            if (line.trim().isEmpty() || line.charAt(0) == COMMENT_PREFIX)
+                continue;
+            try {
+                rules.add(parseRule(line));
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Malformed template rule at line " + lineNumber + ": " + e.getMessage(), e);
+            }
+        }
+        return ImmutableList.copyOf(rules);
+    }
+
+    private static TemplateAliasRule parseRule(final String line) {
+        final List<String> fields = Lists.newArrayList(FIELD_SPLITTER.split(line));
+        if (fields.size() != 4)
+            throw new IllegalArgumentException("Expecting 4 tab separated fields, but found " + fields.size());
+
+        final ImmutableSet<String> names = ImmutableSet.copyOf(Iterables.transform(
+                NAME_SPLITTER.split(fields.get(0)), new Function<String, String>() {
+            @Override
+            public String apply(String name) {
+                return TemplateHandlers.normalise(name);
+            }
+        }));
+        if (names.isEmpty())
+            throw new IllegalArgumentException("No template names");
+
+        final AliasType type = AliasType.valueOf(fields.get(1).toUpperCase(Locale.ENGLISH));
+
+        final BitSet linkArgs = new BitSet();
+        int linkArgsFrom = Integer.MAX_VALUE;
+        for (String link : LINKS_SPLITTER.split(fields.get(2))) {
+            final int dash = link.indexOf('-');
+            if (dash == -1) {
+                linkArgs.set(parseArgIndex(link));
+            } else if (dash == link.length() - 1) {
+                linkArgsFrom = Math.min(linkArgsFrom, parseArgIndex(link.substring(0, dash)));
+            } else {
+                final int from = parseArgIndex(link.substring(0, dash));
+                final int to = parseArgIndex(link.substring(dash + 1));
+                if (to < from)
+                    throw new IllegalArgumentException("Empty argument range: " + link);
+                linkArgs.set(from, to + 1);
+            }
+        }
+        if (linkArgs.isEmpty() && linkArgsFrom == Integer.MAX_VALUE)
+            throw new IllegalArgumentException("No link arguments");
+
+        final boolean linksToTitle;
+        if (LINKS_TO_TITLE.equalsIgnoreCase(fields.get(3))) {
+            linksToTitle = true;
+        } else if (LINKS_FROM_TITLE.equalsIgnoreCase(fields.get(3))) {
+            linksToTitle = false;
+        } else {
+            throw new IllegalArgumentException("Expecting direction " + LINKS_TO_TITLE + " or " + LINKS_FROM_TITLE
+                    + ", but found " + fields.get(3));
+        }
+
+        return new LinkArgumentsTemplateAliasRule(names, type, linkArgs, linkArgsFrom, linksToTitle);
+    }
+
+    /**
+     * Parse a 1-based argument index, returning the 0-based equivalent.
+     */
+    private static int parseArgIndex(final String index) {
+        final int i = Integer.parseInt(index.trim());
+        if (i < 1)
+            throw new IllegalArgumentException("Argument indices start from 1, but found " + i);
+        return i - 1;
+    }
+
+}
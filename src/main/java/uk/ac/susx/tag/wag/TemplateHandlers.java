@@ -0,0 +1,272 @@
+/*
+ * Copyright (c) 2010-2013, University of Sussex
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the University of Sussex nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.ac.susx.tag.wag;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import de.fau.cs.osr.ptk.common.ast.AstNode;
+import org.sweble.wikitext.lazy.preprocessor.Template;
+import org.sweble.wikitext.lazy.preprocessor.TemplateArgument;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+import java.util.Locale;
+import java.util.Map;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static uk.ac.susx.tag.wag.HatNoteTemplateHandlers.*;
+
+/**
+ * Immutable registry of {@link TemplateHandler}s, keyed by normalised template name, so that each template on a page
+ * costs a single hash lookup to dispatch. Handlers may also be registered against a name suffix (e.g
+ * <tt>" disambiguation"</tt>), which is consulted only when there is no handler for the exact name.
+ *
+ * @author Hamish Morgan
+ */
+@Immutable
+final class TemplateHandlers {
+
+    /**
+     * Handlers for all the templates that are supported by default.
+     */
+    static final TemplateHandlers STANDARD = builder()
+            .add(new LowercaseTitle(), "lowercase title")
+            // Free-text hat-notes
+            .add(new LinkText(1, 1, ALL_ARGS), "hatnote", "rellink")
+            .add(new LinkText(2, 2, 1), "for2")
+            // This page is about..., for other uses see...
+            .add(new TitleToPages(0, 9, 2, 2, ALL_ARGS), "about", "two other uses", "three other uses")
+            .add(new TitleToPages(1, 4, 1, 1, ALL_ARGS), "for")
+            .add(new TitleToPages(1, 2, 0, 1, 1), "common name for")
+            // Other pages that may be known by this page's name
+            .add(new PagesToTitle(0, 2, 0, ALL_ARGS), "other uses")
+            .add(new PagesToTitle(1, 1, 0, 1), "other uses2", "other people2", "other places3", "other ships")
+            .add(new PagesToTitle(0, 2, 1, 2), "other uses of")
+            .add(new PagesToTitle(0, 1, 0, 1), "other places")
+            .add(new PagesToTitle(1, 2, 0, 1), "other hurricanes")
+            // ... redirects here
+            .add(new Redirects(1, 7, 1), "redirect", "redirect6")
+            .add(new Redirects(2, 10, 2), "redirect2")
+            .add(new PagesToTitle(2, 2, 0, 1), "redirect3", "redirect-distinguish2")
+            .add(new PagesToTitle(2, 2, 0, ALL_ARGS), "redirect4")
+            .add(new PagesToTitle(3, 3, 0, ALL_ARGS), "redirect10")
+            .add(new PagesToTitle(1, 1, 0, 1), "redirect text")
+            .add(new QuotedRedirects(5, 5), "redirect7")
+            .add(new RedirectTopics(2, 2, 2, false), "redirect-synonym")
+            .add(new RedirectTopics(2, 5, ALL_ARGS, true), "redirect-distinguish")
+            // Other people...
+            .add(new ConsiderDisambiguation(3, 4), "consider disambiguation")
+            .add(new OtherPeople(0, 3), "other people")
+            .add(new MutualAliases(0, 3, 3, 0, 1), "other people3")
+            .add(new MutualAliases(1, 4, 0, 0, ALL_ARGS), "other people5")
+            // Not to be confused with... (the other pages are explicitly not aliases)
+            .add(new Ignored(1, 4), "distinguish")
+            .add(new Ignored(1, 1), "distinguish2")
+            // TODO: Further information, see also etc
+            .add(new Ignored(0, ALL_ARGS), "details", "details3", "further", "further2", "see also", "see also2",
+                    "see for", "solename")
+            // Person info-box
+            .add(new PersondataTemplateHandler(), "persondata")
+            // Disambiguation pages
+            .add(new DisambiguationTemplateHandler(),
+                    "disambiguation", "disambig", "geodis", "dab", "disamb", "hndis")
+            .addSuffix(new DisambiguationTemplateHandler(), " disambiguation")
+            .build();
+
+    private final ImmutableMap<String, TemplateHandler> byName;
+
+    private final ImmutableMap<String, TemplateHandler> bySuffix;
+
+    private TemplateHandlers(Builder builder) {
+        this.byName = ImmutableMap.copyOf(builder.byName);
+        this.bySuffix = ImmutableMap.copyOf(builder.bySuffix);
+    }
+
+    static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Normalise the given template name, as it must be given to {@link #get(String)}.
+     *
+     * @param templateName name of a template, as it appears in the page
+     * @return normalised name
+     */
+    static String normalise(final String templateName) {
+        return templateName.trim().toLowerCase(Locale.ENGLISH);
+    }
+
+    /**
+     * Get the handler for templates of the given name.
+     *
+     * @param name normalised template name
+     * @return handler for the template, or null if it is not handled
+     */
+    @Nullable
+    TemplateHandler get(final String name) {
+        final TemplateHandler handler = byName.get(name);
+        if (handler != null || bySuffix.isEmpty())
+            return handler;
+        for (Map.Entry<String, TemplateHandler> entry : bySuffix.entrySet()) {
+            if (name.endsWith(entry.getKey()))
+                return entry.getValue();
+        }
+        return null;
+    }
+
+    /**
+     * {@code {{Lowercase title}} } indicates the page title should start with a lower-case letter (e.g iPod, gzip.)
+     */
+    private static final class LowercaseTitle implements TemplateHandler {
+
+        @Override
+        public void handle(AliasAstVisitor visitor, Template template, String name) {
+            visitor.setLowerCaseTitle();
+        }
+    }
+
+
+    /**
+     * Adapts a {@link TemplateAliasRule} to the handler interface, passing it the text of the template arguments.
+     */
+    @Immutable
+    private static final class RuleTemplateHandler implements TemplateHandler {
+
+        private final TemplateAliasRule rule;
+
+        RuleTemplateHandler(TemplateAliasRule rule) {
+            this.rule = rule;
+        }
+
+        @Override
+        public void handle(final AliasAstVisitor visitor, Template template, String name) {
+            final ImmutableList.Builder<String> args = ImmutableList.builder();
+            for (AstNode arg : template.getArgs()) {
+                args.add(arg instanceof TemplateArgument
+                        ? visitor.getText(((TemplateArgument) arg).getValue())
+                        : visitor.getText(arg));
+            }
+            rule.apply(name, visitor.getPageTitle(), args.build(), new AliasHandler() {
+                @Override
+                public void handle(Alias alias) {
+                    visitor.addPageTitleAlias(alias.getType(), alias.getSubType(), alias.getSource(), alias.getTarget());
+                }
+            });
+        }
+
+        @Override
+        public String toString() {
+            return rule.toString();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "TemplateHandlers{names=" + byName.keySet() + ", suffixes=" + bySuffix.keySet() + '}';
+    }
+
+    static final class Builder {
+
+        private final Map<String, TemplateHandler> byName = Maps.newLinkedHashMap();
+
+        private final Map<String, TemplateHandler> bySuffix = Maps.newLinkedHashMap();
+
+        private Builder() {
+        }
+
+        /**
+         * Register all the handlers of the given registry.
+         *
+         * @param handlers registry to copy
+         * @return this builder
+         */
+        Builder addAll(final TemplateHandlers handlers) {
+            byName.putAll(handlers.byName);
+            bySuffix.putAll(handlers.bySuffix);
+            return this;
+        }
+
+        /**
+         * Register the given rule, for all the templates it names.
+         *
+         * @param rule rule to register
+         * @return this builder
+         */
+        Builder addRule(final TemplateAliasRule rule) {
+            checkNotNull(rule, "rule");
+            final TemplateHandler handler = new RuleTemplateHandler(rule);
+            for (String name : rule.getTemplateNames())
+                byName.put(normalise(name), handler);
+            return this;
+        }
+
+        /**
+         * Register the handler for templates with any of the given names. Any handler previously registered for one
+         * of the names is replaced.
+         *
+         * @param handler handler to register
+         * @param names   template names
+         * @return this builder
+         */
+        Builder add(final TemplateHandler handler, final String... names) {
+            checkNotNull(handler, "handler");
+            checkArgument(names.length > 0, "no names");
+            for (String name : names)
+                byName.put(normalise(name), handler);
+            return this;
+        }
+
+        /**
+         * Register the handler for templates whose name ends with the given suffix, and that have no handler for
+         * their exact name.
+         *
+         * @param handler handler to register
+         * @param suffix  template name suffix
+         * @return this builder
+         */
+        Builder addSuffix(final TemplateHandler handler, final String suffix) {
+            checkNotNull(handler, "handler");
+            checkArgument(!suffix.isEmpty(), "empty suffix");
+            bySuffix.put(suffix.toLowerCase(Locale.ENGLISH), handler);
+            return this;
+        }
+
+        /**
+         * @return registry of all the handlers added so far
+         */
+        TemplateHandlers build() {
+            return new TemplateHandlers(this);
+        }
+    }
+
+}
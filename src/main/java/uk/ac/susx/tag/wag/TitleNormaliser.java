@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2010-2013, University of Sussex
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the University of Sussex nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.ac.susx.tag.wag;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableSet;
+
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.ThreadSafe;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static uk.ac.susx.tag.wag.AstUtils.*;
+
+/**
+ * Normalises page titles, as they are found in the source and target of page title aliases: the disambiguation suffix
+ * and any namespaces are removed, and the truncated variants of the result are found.
+ * <p/>
+ * The same titles are linked over and over across a dump, so the results are held in a bounded cache, which can be
+ * shared by all the threads processing pages. The cache statistics can be used to choose it's size.
+ *
+ * @author Hamish Morgan
+ */
+@ThreadSafe
+final class TitleNormaliser {
+
+    /**
+     * Normaliser that does not cache anything.
+     */
+    static final TitleNormaliser UNCACHED = new TitleNormaliser(0);
+
+    /**
+     * Cache of normalised titles, or null if caching is disabled.
+     */
+    private final LoadingCache<String, NormalisedTitle> cache;
+
+    /**
+     * @param maximumSize maximum number of titles held in the cache, or 0 to disable caching
+     * @throws IllegalArgumentException if maximumSize is negative
+     */
+    TitleNormaliser(final int maximumSize) {
+        checkArgument(maximumSize >= 0, "maximumSize < 0");
+        if (maximumSize == 0) {
+            cache = null;
+        } else {
+            cache = CacheBuilder.newBuilder()
+                    .maximumSize(maximumSize)
+                    .recordStats()
+                    .build(new CacheLoader<String, NormalisedTitle>() {
+                        @Override
+                        public NormalisedTitle load(String title) {
+                            return NormalisedTitle.of(title);
+                        }
+                    });
+        }
+    }
+
+    /**
+     * Normalise the given title.
+     *
+     * @param title page title, with leading and trailing white space removed
+     * @return the normalised title and it's truncated variants
+     */
+    NormalisedTitle normalise(final String title) {
+        checkNotNull(title, "title");
+        return cache == null ? NormalisedTitle.of(title) : cache.getUnchecked(title);
+    }
+
+    /**
+     * Get the hit and miss statistics of the cache (all zero if caching is disabled.)
+     *
+     * @return cache statistics
+     */
+    CacheStats stats() {
+        return cache == null ? new CacheStats(0, 0, 0, 0, 0, 0) : cache.stats();
+    }
+
+    /**
+     * A page title with the disambiguation suffix and namespaces removed, along with it's truncated variants.
+     */
+    @Immutable
+    static final class NormalisedTitle {
+
+        private final String title;
+
+        private final ImmutableSet<String> variants;
+
+        private NormalisedTitle(final String title, final ImmutableSet<String> variants) {
+            this.title = title;
+            this.variants = variants;
+        }
+
+        static NormalisedTitle of(final String rawTitle) {
+            final String title = stripNamespaces(stripSuffixIfPresent(rawTitle, DISAMBIGUATION_SUFFIX));
+            // Copying keeps the iteration order of the variants, so aliases are produced in the same order
+            return new NormalisedTitle(title, ImmutableSet.copyOf(wikiTitleVarients(title)));
+        }
+
+        /**
+         * @return title with the disambiguation suffix and namespaces removed
+         */
+        String getTitle() {
+            return title;
+        }
+
+        /**
+         * @return truncated variants of the title (see {@link AstUtils#wikiTitleVarients(String)})
+         */
+        ImmutableSet<String> getVariants() {
+            return variants;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2010-2013, University of Sussex
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the University of Sussex nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.ac.susx.tag.wag;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.util.EnumSet;
+import java.util.Set;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * An <tt>AliasHandler</tt> which forwards only aliases of the given types to the delegate; all others are dropped.
+ *
+ * @author Hamish Morgan
+ */
+@NotThreadSafe
+public class TypeFilteringAliasHandler extends ForwardingAliasHandler {
+
+    private final EnumSet<AliasType> acceptedTypes;
+
+    /**
+     * Reusable batch of the accepted aliases, when a batch is only partly accepted.
+     */
+    private final AliasBatch accepted = new AliasBatch();
+
+    /**
+     * Cursor of the last batch handled, kept for reuse.
+     */
+    private AliasBatch.Cursor cursor = null;
+
+    /**
+     * @param delegate      handler to receive the accepted aliases
+     * @param acceptedTypes types of alias to forward
+     * @throws IllegalArgumentException if acceptedTypes is empty
+     */
+    public TypeFilteringAliasHandler(AliasHandler delegate, Set<AliasType> acceptedTypes) {
+        super(delegate);
+        checkNotNull(acceptedTypes, "acceptedTypes");
+        checkArgument(!acceptedTypes.isEmpty(), "acceptedTypes is empty");
+        this.acceptedTypes = EnumSet.copyOf(acceptedTypes);
+    }
+
+    public Set<AliasType> getAcceptedTypes() {
+        return acceptedTypes.clone();
+    }
+
+    @Override
+    public void handle(Alias alias) {
+        checkNotNull(alias, "alias");
+        if (acceptedTypes.contains(alias.getType()))
+            super.handle(alias);
+    }
+
+    @Override
+    public void handleAll(AliasBatch batch) {
+        checkNotNull(batch, "batch");
+        try {
+            // Copy each run of accepted aliases, forwarding the batch untouched if it is all accepted
+            cursor = batch.cursor(cursor);
+            int runStart = 0;
+            while (cursor.next()) {
+                if (!acceptedTypes.contains(cursor.getType())) {
+                    accepted.addAll(batch, runStart, cursor.getIndex());
+                    runStart = cursor.getIndex() + 1;
+                }
+            }
+            if (runStart == 0) {
+                forwardAll(batch);
+            } else {
+                accepted.addAll(batch, runStart, batch.size());
+                if (!accepted.isEmpty())
+                    forwardAll(accepted);
+            }
+        } finally {
+            accepted.clear();
+        }
+    }
+}
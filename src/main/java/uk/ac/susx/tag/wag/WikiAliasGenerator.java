@@ -1,14 +1,25 @@
 package uk.ac.susx.tag.wag;
 
+import com.google.common.base.Charsets;
 import com.google.common.base.Stopwatch;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.common.base.Throwables;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.io.ByteStreams;
 import com.google.common.io.Closeables;
 import com.google.common.io.Closer;
 import com.google.common.io.CountingInputStream;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import de.fau.cs.osr.ptk.common.AstVisitor;
 import edu.jhu.nlp.wikipedia.PageCallbackHandler;
 import edu.jhu.nlp.wikipedia.WikiPage;
 import edu.jhu.nlp.wikipedia.WikiXMLParser;
 import edu.jhu.nlp.wikipedia.WikiXMLSAXParser;
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
 import org.sweble.wikitext.engine.*;
 import org.sweble.wikitext.engine.Compiler;
 import org.sweble.wikitext.engine.utils.SimpleWikiConfiguration;
@@ -18,15 +29,30 @@ import uk.ac.susx.tag.util.DateTimeUtils;
 import uk.ac.susx.tag.util.IOUtils;
 import uk.ac.susx.tag.util.MiscUtil;
 
+import javax.xml.bind.JAXBException;
 import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FilterInputStream;
 import java.io.InputStream;
+import java.io.SequenceInputStream;
 import java.net.URL;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static java.util.concurrent.TimeUnit.NANOSECONDS;
 
@@ -36,30 +62,266 @@ import static java.util.concurrent.TimeUnit.NANOSECONDS;
  */
 public class WikiAliasGenerator {
     private static final Logger LOG = Logger.getLogger(WikiAliasGenerator.class.getName());
+    // Wrapping for the pages in a range of multi-stream dump, so it can be parsed as a document
+    private static final byte[] RANGE_DOCUMENT_START = "<mediawiki>".getBytes(Charsets.UTF_8);
+    private static final byte[] RANGE_DOCUMENT_END = "</mediawiki>".getBytes(Charsets.UTF_8);
     // Configuration defaults
     public static final boolean DEFAULT_identityAliasesProduced = false;
+    public static final int DEFAULT_numWorkerThreads = 1;
+    public static final int DEFAULT_pageQueueCapacity = 256;
+    public static final int DEFAULT_reorderWindow = 1024;
+    public static final int DEFAULT_numDecompressionThreads = 1;
+    public static final int DEFAULT_streamsPerRange = 10;
+    public static final boolean DEFAULT_redirectFastPathEnabled = true;
+    public static final int DEFAULT_maxAliasWords = 10;
+    public static final int DEFAULT_maxAliasChars = 100;
+    public static final int DEFAULT_titleCacheSize = 100000;
+    public static final int DEFAULT_batchSize = 1024;
+    public static final int MAIN_NAMESPACE = 0;
+    public static final ImmutableSet<Integer> DEFAULT_producedNamespaces = ImmutableSet.of(MAIN_NAMESPACE);
 
     //
     private final AliasHandler handler;
 
     private final EnumSet<AliasType> producedTypes;
 
+    // How much of each page must be parsed to produce the required types
+    private PageContent requiredContent;
+
+    // Number of non-empty paragraphs the lead must contain for paragraph bold aliases to be complete
+    private final int requiredLeadParagraphs;
+
     // Configuration parameters
     private boolean identityAliasesProduced = DEFAULT_identityAliasesProduced;
+    private int numWorkerThreads = DEFAULT_numWorkerThreads;
+    private int pageQueueCapacity = DEFAULT_pageQueueCapacity;
+    private int reorderWindow = DEFAULT_reorderWindow;
+    private int numDecompressionThreads = DEFAULT_numDecompressionThreads;
+    private int streamsPerRange = DEFAULT_streamsPerRange;
+    private boolean redirectFastPathEnabled = DEFAULT_redirectFastPathEnabled;
+    private ImmutableSet<Integer> producedNamespaces = DEFAULT_producedNamespaces;
+    private TemplateHandlers templateHandlers = TemplateHandlers.STANDARD;
+    private int maxAliasWords = DEFAULT_maxAliasWords;
+    private int maxAliasChars = DEFAULT_maxAliasChars;
+    private AliasCandidateFilter candidateFilter = new AliasCandidateFilter(maxAliasChars, maxAliasWords);
+    private TitleNormaliser titleNormaliser = new TitleNormaliser(DEFAULT_titleCacheSize);
+    private int batchSize = DEFAULT_batchSize;
 
     public WikiAliasGenerator(AliasHandler handler, EnumSet<AliasType> producedTypes) {
         this.handler = checkNotNull(handler, "handler");
         this.producedTypes = EnumSet.copyOf(producedTypes);
+        this.requiredContent = PageContent.requiredBy(this.producedTypes);
+        this.requiredLeadParagraphs = this.producedTypes.contains(AliasType.P2BOLD) ? 2
+                : this.producedTypes.contains(AliasType.P1BOLD) ? 1 : 0;
     }
 
     public void setIdentityAliasesProduced(boolean identityAliasesProduced) {
         this.identityAliasesProduced = identityAliasesProduced;
     }
 
-    public void process(URL wikiXmlUrl, int limit) throws Exception {
-        final CompressorStreamFactory2 compressorFactory = CompressorStreamFactory2.builder()
+    /**
+     * Set the number of threads used to parse pages and extract aliases. When set to 1 (the default) all the work is
+     * done on the thread that reads the XML. Otherwise the reading thread hands pages to the given number of worker
+     * threads, each of which has it's own Sweble compiler. Either way aliases are passed to the handler in the order
+     * the pages occur in the input.
+     *
+     * @param numWorkerThreads number of threads that parse pages
+     * @throws IllegalArgumentException if numWorkerThreads is less than 1
+     */
+    public void setNumWorkerThreads(int numWorkerThreads) {
+        checkArgument(numWorkerThreads >= 1, "numWorkerThreads < 1");
+        this.numWorkerThreads = numWorkerThreads;
+    }
+
+    /**
+     * Set the maximum number of pages which may be waiting for a worker thread, before the XML reader blocks. Only
+     * used when there is more than one worker thread.
+     *
+     * @param pageQueueCapacity maximum number of pages waiting to be processed
+     * @throws IllegalArgumentException if pageQueueCapacity is less than 1
+     */
+    public void setPageQueueCapacity(int pageQueueCapacity) {
+        checkArgument(pageQueueCapacity >= 1, "pageQueueCapacity < 1");
+        this.pageQueueCapacity = pageQueueCapacity;
+    }
+
+    /**
+     * Set the maximum number of pages that may be in flight at once, when there is more than one worker thread. This
+     * includes pages waiting to be processed, being processed, and processed but waiting for an earlier page to
+     * complete, so that aliases can be handled in input order.
+     *
+     * @param reorderWindow maximum number of pages in flight
+     * @throws IllegalArgumentException if reorderWindow is less than 1
+     */
+    public void setReorderWindow(int reorderWindow) {
+        checkArgument(reorderWindow >= 1, "reorderWindow < 1");
+        this.reorderWindow = reorderWindow;
+    }
+
+    /**
+     * Set the number of threads used to decompress BZip2 input. When greater than 1 the separate streams of a
+     * multi-stream dump (such as <tt>pages-articles-multistream.xml.bz2</tt>) are decompressed concurrently, and
+     * read back in order. Single-stream dumps are always decompressed sequentially.
+     *
+     * @param numDecompressionThreads number of threads that decompress input
+     * @throws IllegalArgumentException if numDecompressionThreads is less than 1
+     */
+    public void setNumDecompressionThreads(int numDecompressionThreads) {
+        checkArgument(numDecompressionThreads >= 1, "numDecompressionThreads < 1");
+        this.numDecompressionThreads = numDecompressionThreads;
+    }
+
+    /**
+     * Set the number of consecutive BZip2 streams that are grouped into a range, when processing a multi-stream dump
+     * using it's index. Each range is decompressed, parsed, and processed as an independent task. Wikipedia dumps
+     * store 100 pages per stream.
+     *
+     * @param streamsPerRange number of streams in each range
+     * @throws IllegalArgumentException if streamsPerRange is less than 1
+     */
+    public void setStreamsPerRange(int streamsPerRange) {
+        checkArgument(streamsPerRange >= 1, "streamsPerRange < 1");
+        this.streamsPerRange = streamsPerRange;
+    }
+
+    /**
+     * Set whether simple redirect pages (<tt>#REDIRECT [[target]]</tt>, optionally followed by redirect category
+     * templates) are recognised directly from their wiki text, rather than being parsed by Sweble. The aliases
+     * produced are the same either way; pages that are not recognised are always parsed.
+     *
+     * @param redirectFastPathEnabled true to recognise simple redirects without parsing them
+     */
+    public void setRedirectFastPathEnabled(boolean redirectFastPathEnabled) {
+        this.redirectFastPathEnabled = redirectFastPathEnabled;
+    }
+
+    /**
+     * Set the namespaces (by id) of the pages that aliases are produced from. Pages in any other namespace are skipped
+     * before they are parsed. By default only pages in the main (article) namespace are processed. An empty set means
+     * pages from all namespaces are processed.
+     *
+     * @param producedNamespaces ids of the namespaces to process, or empty for all namespaces
+     */
+    public void setProducedNamespaces(Set<Integer> producedNamespaces) {
+        this.producedNamespaces = ImmutableSet.copyOf(checkNotNull(producedNamespaces, "producedNamespaces"));
+    }
+
+    /**
+     * Set the maximum number of white space separated words in the source or target of an alias. Longer aliases are
+     * discarded.
+     *
+     * @param maxAliasWords maximum number of words in an alias
+     * @throws IllegalArgumentException if maxAliasWords is less than 1
+     */
+    public void setMaxAliasWords(int maxAliasWords) {
+        checkArgument(maxAliasWords >= 1, "maxAliasWords < 1");
+        this.maxAliasWords = maxAliasWords;
+        this.candidateFilter = new AliasCandidateFilter(maxAliasChars, maxAliasWords);
+    }
+
+    /**
+     * Set the maximum number of characters in the source or target of an alias. Longer aliases are discarded.
+     *
+     * @param maxAliasChars maximum number of characters in an alias
+     * @throws IllegalArgumentException if maxAliasChars is less than 1
+     */
+    public void setMaxAliasChars(int maxAliasChars) {
+        checkArgument(maxAliasChars >= 1, "maxAliasChars < 1");
+        this.maxAliasChars = maxAliasChars;
+        this.candidateFilter = new AliasCandidateFilter(maxAliasChars, maxAliasWords);
+    }
+
+    /**
+     * Set the maximum number of normalised page titles that are cached. The cache is shared by all the worker threads,
+     * and it's hit and miss statistics are logged once processing is complete (see {@link #getTitleCacheStats()}.)
+     *
+     * @param titleCacheSize maximum number of cached titles, or 0 to disable the cache
+     * @throws IllegalArgumentException if titleCacheSize is negative
+     */
+    public void setTitleCacheSize(int titleCacheSize) {
+        checkArgument(titleCacheSize >= 0, "titleCacheSize < 0");
+        this.titleNormaliser = new TitleNormaliser(titleCacheSize);
+    }
+
+    /**
+     * Set the number of aliases to collect, from consecutive whole pages, before passing them to the handler as a
+     * single batch (see {@link BatchAliasHandler}.) A page which produces more aliases than this is passed as one
+     * larger batch.
+     *
+     * @param batchSize minimum number of aliases in each batch (except the last)
+     * @throws IllegalArgumentException if batchSize is less than 1
+     */
+    public void setBatchSize(int batchSize) {
+        checkArgument(batchSize >= 1, "batchSize < 1");
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Get the hit and miss statistics of the normalised page title cache, accumulated since it was created.
+     *
+     * @return title cache statistics
+     */
+    public CacheStats getTitleCacheStats() {
+        return titleNormaliser.stats();
+    }
+
+    /**
+     * Set additional rules for extracting aliases from templates. The rules are compiled, together with the standard
+     * template handlers, into a single lookup table that is shared by all pages. A rule replaces any standard handler
+     * of the same template name, and later rules replace earlier ones.
+     *
+     * @param templateAliasRules rules to apply, in addition to the standard template handling
+     */
+    public void setTemplateAliasRules(Collection<? extends TemplateAliasRule> templateAliasRules) {
+        checkNotNull(templateAliasRules, "templateAliasRules");
+        final TemplateHandlers.Builder builder = TemplateHandlers.builder().addAll(TemplateHandlers.STANDARD);
+        PageContent content = PageContent.requiredBy(producedTypes);
+        for (TemplateAliasRule rule : templateAliasRules) {
+            builder.addRule(rule);
+            // Templates can occur anywhere on the page
+            if (producedTypes.contains(rule.getAliasType()))
+                content = PageContent.FULL_TEXT;
+        }
+        this.templateHandlers = builder.build();
+        this.requiredContent = content;
+    }
+
+    private AliasAstVisitor newVisitor(WikiPage page, AliasHandler sink) {
+        return new AliasAstVisitor(page.getTitle(), producedTypes, templateHandlers, candidateFilter,
+                titleNormaliser, sink);
+    }
+
+    private void logTitleCacheStats() {
+        if (LOG.isLoggable(Level.INFO)) {
+            final CacheStats stats = titleNormaliser.stats();
+            LOG.log(Level.INFO, "Title cache: {0} hits, {1} misses ({2}% hit rate), {3} evictions.",
+                    new Object[]{stats.hitCount(), stats.missCount(), 100.0 * stats.hitRate(),
+                            stats.evictionCount()});
+        }
+    }
+
+    /**
+     * Wrap the given handler so that it receives aliases exactly as they should be output; i.e without identity
+     * aliases, unless they are enabled.
+     */
+    private AliasHandler newSink(AliasHandler downstream) {
+        return identityAliasesProduced ? downstream : new IdentityAliasFilter(downstream);
+    }
+
+    /**
+     * Create a compressor factory that detects the input compression from it's signature, and reads all the streams
+     * of multi-stream archives.
+     */
+    private CompressorStreamFactory2 newCompressorFactory() {
+        return CompressorStreamFactory2.builder()
                 .setTransparentSignatureDetection(true)
+                .setDecompressConcatenated(true)
+                .setBzip2DecompressionThreads(numDecompressionThreads)
                 .build();
+    }
+
+    public void process(URL wikiXmlUrl, int limit) throws Exception {
+        final CompressorStreamFactory2 compressorFactory = newCompressorFactory();
         Closer closer = Closer.create();
 
         try {
@@ -99,96 +361,631 @@ public class WikiAliasGenerator {
 
     }
 
+    /**
+     * Process the pages of a Wikipedia XML dump, which may be compressed. The given stream is not closed.
+     *
+     * @param inputStream       XML dump to read
+     * @param limit             maximum number of pages to process, or -1 for no limit
+     * @param expectedSizeBytes size of the input, used to estimate progress, or -1 if unknown
+     */
     public void process(final InputStream inputStream, final int limit, final long expectedSizeBytes) throws Exception {
 
-        final org.sweble.wikitext.engine.Compiler swebleCompiler;
-        SimpleWikiConfiguration config = new SimpleWikiConfiguration(
-                "classpath:" + File.separator + IOUtils.combinePath(
-                        "org", "sweble", "wikitext", "engine", "SimpleWikiConfiguration.xml"));
-        swebleCompiler = new Compiler(config);
-
-        final CompressorStreamFactory2 compressorFactory = CompressorStreamFactory2.builder()
-                .setTransparentSignatureDetection(true)
-                .build();
+        final CompressorStreamFactory2 compressorFactory = newCompressorFactory();
 
         final CountingInputStream cis = new CountingInputStream(inputStream);
 
-        final InputStream xis = compressorFactory.createCompressorInputStream(
-                new BufferedInputStream(cis));
+        // The decompressor is closed once the input has been processed, to release any decompression threads, but
+        // the given stream belongs to the caller so is shielded from that
+        final Closer closer = Closer.create();
+        try {
+            final InputStream xis = closer.register(compressorFactory.createCompressorInputStream(
+                    new BufferedInputStream(new FilterInputStream(cis) {
+                        @Override
+                        public void close() {
+                        }
+                    })));
+
+            final WikiXMLParser parser = new WikiXMLSAXParser(xis);
+
+            final Stopwatch sw = new Stopwatch();
+            sw.start();
+
+            final PageConsumer consumer = numWorkerThreads > 1
+                    ? new ParallelPageConsumer(numWorkerThreads, pageQueueCapacity, reorderWindow)
+                    : new SerialPageConsumer();
+
+            parser.setPageCallback(new PageCallbackHandler() {
+
+                private int count = 0;
+
+                @Override
+                public void process(WikiPage page) {
+//                    System.out.println("Title: " + page.getTitle());
+                    if (limit >= 0 && count >= limit) {
+                        throw new WikiXMLParserHaltException();
+                    }
+
+                    // Display progress intermittently
+                    if (count % 1000 == 0 && LOG.isLoggable(Level.INFO)) {
+                        if (expectedSizeBytes >= 0) {
+                            // We know how much data to expect so we can predict time remaining
+                            final long bytesReader = cis.getCount();
+                            final double pctComplete = (100.0 * bytesReader) / expectedSizeBytes;
+                            LOG.log(Level.INFO, "Processed {0} of {1} ({2}% complete.)",
+                                    new Object[]{MiscUtil.humanReadableBytes(cis.getCount()),
+                                            MiscUtil.humanReadableBytes(expectedSizeBytes), pctComplete});
+
+                            long elapsed = sw.elapsed(NANOSECONDS);
+                            long remaining = (long) (elapsed * (100.0 - pctComplete) / pctComplete);
+                            LOG.log(Level.INFO, "Elapsed time {0} (Estimated {1} remaining.)",
+                                    new Object[]{DateTimeUtils.humanReadableTime(elapsed, NANOSECONDS),
+                                            DateTimeUtils.humanReadableTime(remaining, NANOSECONDS)});
+                        }
+                    }
+
+                    consumer.accept(page);
 
+                    ++count;
+                }
+
+            });
+
+            try {
+                parser.parse();
+            } catch (WikiXMLParserHaltException ex) {
+                // swallow
+            } finally {
+                consumer.finish();
+            }
+        } catch (Throwable t) {
+            throw closer.rethrow(t, Exception.class);
+        } finally {
+            closer.close();
+        }
+        logTitleCacheStats();
 
-        final WikiXMLParser parser = new WikiXMLSAXParser(xis);
+    }
+
+    /**
+     * Process a multi-stream BZip2 dump (such as <tt>pages-articles-multistream.xml.bz2</tt>) using it's index.
+     * <p/>
+     * The index is used to split the dump into ranges of whole streams. Each range is read from it's own position in
+     * the file, with it's own decompressor, XML parser and Sweble compiler, so ranges are processed completely
+     * independently by the worker threads (see {@link #setNumWorkerThreads(int)}.) Aliases are passed to the handler
+     * in the order the pages occur in the dump.
+     *
+     * @param multistreamDump multi-stream dump file
+     * @param index           index of the dump
+     * @param limit           maximum number of pages to process (or -1 for no limit)
+     * @throws Exception if reading or processing any range fails
+     */
+    public void process(final File multistreamDump, final MultistreamIndex index, final int limit) throws Exception {
+        checkNotNull(multistreamDump, "multistreamDump");
+        checkNotNull(index, "index");
+
+        final List<StreamRange> ranges = splitIntoRanges(index, limit);
+        LOG.log(Level.INFO, "Processing {0} in {1} stream ranges.", new Object[]{index, ranges.size()});
 
         final Stopwatch sw = new Stopwatch();
         sw.start();
 
-        parser.setPageCallback(new PageCallbackHandler() {
-
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        final OutputBatcher batcher = new OutputBatcher();
+        final ReorderBuffer<AliasBatch> reorderBuffer = new ReorderBuffer<AliasBatch>(2 * numWorkerThreads) {
             private int count = 0;
 
             @Override
-            public void process(WikiPage page) {
-//                System.out.println("Title: " + page.getTitle());
-                if (limit >= 0 && count >= limit) {
-                    throw new WikiXMLParserHaltException();
-                }
+            protected void release(final AliasBatch aliases) {
+                batcher.addAll(aliases);
+                batcher.endPage();
 
                 // Display progress intermittently
-                if (count % 1000 == 0 && LOG.isLoggable(Level.INFO)) {
-                    if (expectedSizeBytes >= 0) {
-                        // We know how much data to expect so we can predict time remaining
-                        final long bytesReader = cis.getCount();
-                        final double pctComplete = (100.0 * bytesReader) / expectedSizeBytes;
-                        LOG.log(Level.INFO, "Processed {0} of {1} ({2}% complete.)",
-                                new Object[]{MiscUtil.humanReadableBytes(cis.getCount()),
-                                        MiscUtil.humanReadableBytes(expectedSizeBytes), pctComplete});
-
-                        long elapsed = sw.elapsed(NANOSECONDS);
-                        long remaining = (long) (elapsed * (100.0 - pctComplete) / pctComplete);
-                        LOG.log(Level.INFO, "Elapsed time {0} (Estimated {1} remaining.)",
-                                new Object[]{DateTimeUtils.humanReadableTime(elapsed, NANOSECONDS),
-                                        DateTimeUtils.humanReadableTime(remaining, NANOSECONDS)});
+                if (++count % 100 == 0 && LOG.isLoggable(Level.INFO)) {
+                    final double pctComplete = (100.0 * count) / ranges.size();
+                    final long elapsed = sw.elapsed(NANOSECONDS);
+                    final long remaining = (long) (elapsed * (100.0 - pctComplete) / pctComplete);
+                    LOG.log(Level.INFO, "Processed {0} of {1} stream ranges ({2}% complete.)",
+                            new Object[]{count, ranges.size(), pctComplete});
+                    LOG.log(Level.INFO, "Elapsed time {0} (Estimated {1} remaining.)",
+                            new Object[]{DateTimeUtils.humanReadableTime(elapsed, NANOSECONDS),
+                                    DateTimeUtils.humanReadableTime(remaining, NANOSECONDS)});
+                }
+            }
+        };
+
+        final ExecutorService executor = Executors.newFixedThreadPool(numWorkerThreads, new ThreadFactoryBuilder()
+                .setNameFormat("wag-range-worker-%d")
+                .setDaemon(true)
+                .build());
+        try {
+            for (final StreamRange range : ranges) {
+                if (failure.get() != null)
+                    break;
+                final long sequence = reorderBuffer.nextSequence();
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        // Every sequence number must be completed, even after a failure, so the producer never
+                        // blocks forever
+                        AliasBatch aliases = new AliasBatch(0);
+                        try {
+                            if (failure.get() == null)
+                                aliases = processRange(COMPILER.get(), multistreamDump, range);
+                        } catch (Throwable t) {
+                            failure.compareAndSet(null, t);
+                        }
+                        try {
+                            reorderBuffer.complete(sequence, aliases);
+                        } catch (Throwable t) {
+                            failure.compareAndSet(null, t);
+                        }
                     }
+                });
+            }
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(Long.MAX_VALUE, NANOSECONDS);
+        }
+
+        final Throwable t = failure.get();
+        if (t != null) {
+            Throwables.propagateIfPossible(t, Exception.class);
+            throw new RuntimeException(t);
+        }
+        batcher.flush();
+        logTitleCacheStats();
+    }
+
+    /**
+     * Group the streams of the index into ranges of (up to) streamsPerRange consecutive streams, covering the first
+     * limit pages.
+     * <p/>
+     * The end of the last indexed stream is unknown, because the stream holding the closing tag follows it, so the
+     * last stream is always placed in a range on it's own, which is read as a single BZip2 stream.
+     */
+    private List<StreamRange> splitIntoRanges(final MultistreamIndex index, final int limit) {
+        final List<StreamRange> ranges = Lists.newArrayList();
+        final int nStreams = index.getStreamCount();
+        long pagesRemaining = limit >= 0 ? limit : Long.MAX_VALUE;
+        int first = 0;
+        while (first < nStreams && pagesRemaining > 0) {
+            int end = Math.min(first + streamsPerRange, nStreams - 1);
+            if (end <= first)
+                end = nStreams;
+
+            long pages = 0;
+            for (int i = first; i < end; i++)
+                pages += index.getStreamPageCount(i);
+
+            ranges.add(new StreamRange(
+                    index.getStreamOffset(first),
+                    end < nStreams ? index.getStreamOffset(end) : -1L,
+                    (int) Math.min(pages, pagesRemaining)));
+            pagesRemaining -= pages;
+            first = end;
+        }
+        return ranges;
+    }
+
+    /**
+     * Decompress and parse the pages in the given range of the dump, and extract all aliases from them.
+     *
+     * @param swebleCompiler  compiler to parse the pages with (not thread safe)
+     * @param multistreamDump multi-stream dump file
+     * @param range           range of streams to process
+     * @return aliases discovered in the range, in page order
+     */
+    private AliasBatch processRange(final Compiler swebleCompiler, final File multistreamDump,
+                                    final StreamRange range) throws Exception {
+        final AliasBatch aliases = new AliasBatch();
+        final AliasHandler sink = newSink(new CollectingAliasHandler(aliases));
+        final Closer closer = Closer.create();
+        try {
+            final FileInputStream fileStream = closer.register(new FileInputStream(multistreamDump));
+            fileStream.getChannel().position(range.start);
+
+            InputStream compressed = new BufferedInputStream(fileStream);
+            if (range.end >= 0)
+                compressed = ByteStreams.limit(compressed, range.end - range.start);
+
+            // The streams only contain <page> elements, so wrap them up as a complete document
+            final InputStream pages = closer.register(new BZip2CompressorInputStream(compressed, range.end >= 0));
+            final InputStream xml = new SequenceInputStream(Collections.enumeration(ImmutableList.of(
+                    new ByteArrayInputStream(RANGE_DOCUMENT_START), pages,
+                    new ByteArrayInputStream(RANGE_DOCUMENT_END))));
+
+            final WikiXMLParser parser = new WikiXMLSAXParser(xml);
+            parser.setPageCallback(new PageCallbackHandler() {
+
+                private int count = 0;
+
+                @Override
+                public void process(WikiPage page) {
+                    if (count >= range.pageLimit) {
+                        throw new WikiXMLParserHaltException();
+                    }
+                    extractAliases(swebleCompiler, page, sink);
+                    ++count;
                 }
+            });
 
-                try {
+            try {
+                parser.parse();
+            } catch (WikiXMLParserHaltException ex) {
+                // swallow
+            }
+        } catch (Throwable t) {
+            throw closer.rethrow(t, Exception.class);
+        } finally {
+            closer.close();
+        }
+        return aliases;
+    }
 
-                    final PageTitle pageTitle = PageTitle.make(swebleCompiler.getWikiConfig(), page.getTitle());
-                    final PageId pageId = new PageId(pageTitle, -1);
-                    final CompiledPage cp = swebleCompiler.postprocess(pageId, page.getWikiText(), null);
+    /**
+     * Sweble configuration, loaded from the classpath on first use and then shared by every generator and thread.
+     */
+    private static final Supplier<SimpleWikiConfiguration> WIKI_CONFIGURATION = Suppliers.memoize(
+            new Supplier<SimpleWikiConfiguration>() {
+                @Override
+                public SimpleWikiConfiguration get() {
+                    try {
+                        return newWikiConfiguration();
+                    } catch (Exception e) {
+                        throw new IllegalStateException("Failed to load Sweble wiki configuration.", e);
+                    }
+                }
+            });
+
+    /**
+     * Sweble compiler for the current thread. Compilers are not thread safe, but they can be reused for any number of
+     * pages, so each thread creates one on first use and keeps it for all subsequent inputs.
+     */
+    private static final ThreadLocal<Compiler> COMPILER = new ThreadLocal<Compiler>() {
+        @Override
+        protected Compiler initialValue() {
+            return new Compiler(WIKI_CONFIGURATION.get());
+        }
+    };
 
-                    final AstVisitor visitor = new AliasAstVisitor(page.getTitle(), producedTypes);
-                    final Iterable<Alias> aliases = (Iterable<Alias>) visitor.go(cp.getPage());
+    /**
+     * Load the default Sweble wiki configuration from the classpath.
+     */
+    private static SimpleWikiConfiguration newWikiConfiguration() throws FileNotFoundException, JAXBException {
+        return new SimpleWikiConfiguration(
+                "classpath:" + File.separator + IOUtils.combinePath(
+                        "org", "sweble", "wikitext", "engine", "SimpleWikiConfiguration.xml"));
+    }
+
+    /**
+     * Parse the given page with Sweble and extract all aliases from it.
+     * <p/>
+     * Only as much of the page is parsed as the produced types require: nothing at all when only titles are produced,
+     * just the redirect link when only titles and redirects are produced, and just the lead section when nothing
+     * beyond first section (or paragraph) bold text is produced.
+     * <p/>
+     * Aliases are passed to the sink as they are found. If the page can not be parsed a warning is logged, and any
+     * aliases already passed to the sink stand.
+     *
+     * @param swebleCompiler compiler to parse the page with (not thread safe)
+     * @param page           page to process
+     * @param sink           receives the aliases discovered in the page
+     */
+    private void extractAliases(final Compiler swebleCompiler, final WikiPage page, final AliasHandler sink) {
+        try {
 
-                    for (Alias alias : aliases) {
+            final PageTitle pageTitle = PageTitle.make(swebleCompiler.getWikiConfig(), page.getTitle());
 
-                        // Don't produce aliases where the soruce and target are the same (if disabled)
-                        if (!identityAliasesProduced && alias.getTarget().equals(alias.getSource()))
-                            continue;
+            // Skip Talk, User, Template pages etc before doing any real work
+            if (!producedNamespaces.isEmpty() && !producedNamespaces.contains(pageTitle.getNamespace().getId()))
+                return;
 
+            // Most redirect pages contain nothing but the redirect, so don't bother building the AST
+            if (redirectFastPathEnabled) {
+                final String redirectTarget = RedirectRecogniser.findTarget(page.getWikiText(), templateHandlers);
+                if (redirectTarget != null) {
+                    newVisitor(page, sink).goRedirect(redirectTarget);
+                    return;
+                }
+            }
 
-                        handler.handle(alias);
+            final PageId pageId = new PageId(pageTitle, -1);
 
+            switch (requiredContent) {
+                case TITLE:
+                    newVisitor(page, sink).goTitle();
+                    return;
+                case REDIRECT:
+                    if (!RedirectRecogniser.mayBeRedirect(page.getWikiText())) {
+                        newVisitor(page, sink).goTitle();
+                        return;
                     }
+                    final String redirectTarget = RedirectRecogniser.findLinkTarget(page.getWikiText());
+                    if (redirectTarget != null) {
+                        newVisitor(page, sink).goRedirect(redirectTarget);
+                        return;
+                    }
+                    break;
+                case LEAD_SECTION:
+                    final int leadEnd = LeadSection.findEnd(page.getWikiText());
+                    if (leadEnd == -1)
+                        break;
+                    final CompiledPage lead = swebleCompiler.postprocess(
+                            pageId, page.getWikiText().substring(0, leadEnd), null);
+                    // The lead aliases are collected, since they are discarded if the whole page must be parsed
+                    final AliasAstVisitor leadVisitor = newVisitor(page, null);
+                    final List<Alias> leadAliases = (List<Alias>) leadVisitor.go(lead.getPage());
+                    // Paragraph bold may be found after the lead, if it's too short
+                    if (leadVisitor.getNonEmptyParagraphCount() >= requiredLeadParagraphs) {
+                        for (Alias alias : leadAliases)
+                            sink.handle(alias);
+                        return;
+                    }
+                    break;
+                default:
+                    break;
+            }
+
+            final CompiledPage cp = swebleCompiler.postprocess(pageId, page.getWikiText(), null);
+
+            final AstVisitor visitor = newVisitor(page, sink);
+            visitor.go(cp.getPage());
+
+        } catch (CompilerException e) {
+            LOG.log(Level.WARNING, "Failed to parse WikiText in page: " + page.getTitle(), e);
+        } catch (LinkTargetException e) {
+            LOG.log(Level.WARNING, "Failed to parse WikiText in page: " + page.getTitle(), e);
+        }
+    }
+
+    /**
+     * AliasHandler that appends every alias to a batch.
+     */
+    private static final class CollectingAliasHandler implements AliasHandler {
+
+        private final AliasBatch aliases;
+
+        CollectingAliasHandler(final AliasBatch aliases) {
+            this.aliases = aliases;
+        }
+
+        @Override
+        public void handle(final Alias alias) {
+            aliases.add(alias);
+        }
+    }
+
+    /**
+     * Collects the aliases of consecutive pages, and passes them on to the handler as a batch once there are at least
+     * batchSize of them. The aliases have already been through the sink, so are not filtered again.
+     */
+    private final class OutputBatcher implements AliasHandler {
+
+        private final AliasBatch batch = new AliasBatch();
+
+        private final int minBatchSize = batchSize;
+
+        @Override
+        public void handle(final Alias alias) {
+            batch.add(alias);
+        }
+
+        void addAll(final AliasBatch aliases) {
+            batch.addAll(aliases);
+        }
+
+        /**
+         * Called once all the aliases of a page have been added.
+         */
+        void endPage() {
+            if (batch.size() >= minBatchSize)
+                flush();
+        }
+
+        /**
+         * Pass on any aliases that have been collected.
+         */
+        void flush() {
+            if (!batch.isEmpty()) {
+                batch.forwardTo(handler);
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Receives pages from the SAX parser thread, and is responsible for seeing that they are processed.
+     */
+    private interface PageConsumer {
+
+        void accept(WikiPage page);
+
+        /**
+         * Called once, after the last page has been accepted (or parsing has failed.) Blocks until all accepted pages
+         * have been processed.
+         */
+        void finish() throws Exception;
+    }
+
+    /**
+     * PageConsumer that processes each page immediately on the calling (SAX parser) thread.
+     */
+    private final class SerialPageConsumer implements PageConsumer {
+
+        private final Compiler swebleCompiler;
+
+        private final OutputBatcher batcher;
+
+        private final AliasHandler sink;
+
+        SerialPageConsumer() {
+            swebleCompiler = COMPILER.get();
+            batcher = new OutputBatcher();
+            sink = newSink(batcher);
+        }
+
+        @Override
+        public void accept(final WikiPage page) {
+            extractAliases(swebleCompiler, page, sink);
+            batcher.endPage();
+        }
+
+        @Override
+        public void finish() {
+            // nothing to wait for, but pass on the last batch
+            batcher.flush();
+        }
+    }
+
+    /**
+     * PageConsumer that hands pages to a pool of worker threads, through a bounded queue. Each worker parses pages
+     * with it's own Sweble compiler, so the SAX parser thread only has to read the XML.
+     * <p/>
+     * Each page is given a sequence number as it is read, and the aliases produced by the workers are passed through a
+     * {@link ReorderBuffer}, so the handler receives them in exactly the same order as it would with a single thread.
+     * The reorder window bounds the number of pages in flight, so memory use does not grow without limit when one
+     * page is especially slow to process.
+     * <p/>
+     * If a worker fails then the SAX parser is halted as soon as possible, and the failure is re-thrown from
+     * {@link #finish()}.
+     */
+    private final class ParallelPageConsumer implements PageConsumer {
 
+        /**
+         * Marker placed on the queue (once for each worker) to indicate that no more pages will follow.
+         */
+        private final SequencedPage endOfPages = new SequencedPage(-1, null);
 
-                } catch (CompilerException e) {
-                    LOG.log(Level.WARNING, "Failed to parse WikiText in page: " + page.getTitle(), e);
-                } catch (LinkTargetException e) {
-                    LOG.log(Level.WARNING, "Failed to parse WikiText in page: " + page.getTitle(), e);
+        private final BlockingQueue<SequencedPage> queue;
+
+        private final ReorderBuffer<AliasBatch> reorderBuffer;
+
+        private final OutputBatcher batcher = new OutputBatcher();
+
+        private final ExecutorService executor;
+
+        private final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+
+        private final int nWorkers;
+
+        ParallelPageConsumer(final int nWorkers,
+                             final int queueCapacity, final int reorderWindow) {
+            this.nWorkers = nWorkers;
+            queue = new ArrayBlockingQueue<SequencedPage>(queueCapacity);
+            reorderBuffer = new ReorderBuffer<AliasBatch>(reorderWindow) {
+                @Override
+                protected void release(final AliasBatch aliases) {
+                    batcher.addAll(aliases);
+                    batcher.endPage();
                 }
+            };
+            executor = Executors.newFixedThreadPool(nWorkers, new ThreadFactoryBuilder()
+                    .setNameFormat("wag-worker-%d")
+                    .setDaemon(true)
+                    .build());
+            for (int i = 0; i < nWorkers; i++)
+                executor.execute(new Worker());
+        }
 
-                ++count;
+        @Override
+        public void accept(final WikiPage page) {
+            if (failure.get() != null)
+                throw new WikiXMLParserHaltException("Page processing failed.", failure.get());
+            try {
+                queue.put(new SequencedPage(reorderBuffer.nextSequence(), page));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new WikiXMLParserHaltException(e);
             }
+        }
 
-        });
+        @Override
+        public void finish() throws Exception {
+            for (int i = 0; i < nWorkers; i++)
+                queue.put(endOfPages);
+            executor.shutdown();
+            executor.awaitTermination(Long.MAX_VALUE, NANOSECONDS);
+
+            final Throwable t = failure.get();
+            if (t != null) {
+                Throwables.propagateIfPossible(t, Exception.class);
+                throw new RuntimeException(t);
+            }
+            batcher.flush();
+        }
 
-        try {
-            parser.parse();
-        } catch (WikiXMLParserHaltException ex) {
-            // swallow
+        private final class Worker implements Runnable {
+
+            @Override
+            public void run() {
+                try {
+                    SequencedPage item;
+                    while ((item = queue.take()) != endOfPages) {
+                        // After a failure keep draining the queue, and completing every sequence number, so the
+                        // parser thread never blocks forever
+                        // Aliases must be held until the page's turn comes, but identity aliases are dropped first
+                        AliasBatch aliases = new AliasBatch(0);
+                        try {
+                            if (failure.get() == null) {
+                                aliases = new AliasBatch();
+                                extractAliases(COMPILER.get(), item.page, newSink(new CollectingAliasHandler(aliases)));
+                            }
+                        } catch (Throwable t) {
+                            failure.compareAndSet(null, t);
+                        }
+                        try {
+                            reorderBuffer.complete(item.sequence, aliases);
+                        } catch (Throwable t) {
+                            failure.compareAndSet(null, t);
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    failure.compareAndSet(null, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * A range of consecutive streams in a multi-stream dump.
+     */
+    private static final class StreamRange {
+
+        /**
+         * Offset of the first stream in the range.
+         */
+        private final long start;
+
+        /**
+         * Offset of the first stream after the range, or -1 if the range is a single stream of unknown length.
+         */
+        private final long end;
+
+        /**
+         * Maximum number of pages to process from the range.
+         */
+        private final int pageLimit;
+
+        StreamRange(final long start, final long end, final int pageLimit) {
+            this.start = start;
+            this.end = end;
+            this.pageLimit = pageLimit;
         }
+    }
+
+    /**
+     * A page along with it's position in the input.
+     */
+    private static final class SequencedPage {
 
+        private final long sequence;
+
+        private final WikiPage page;
+
+        SequencedPage(final long sequence, final WikiPage page) {
+            this.sequence = sequence;
+            this.page = page;
+        }
     }
 
 
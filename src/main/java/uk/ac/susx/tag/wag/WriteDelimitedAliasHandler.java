@@ -0,0 +1,331 @@
+/*
+ * Copyright (c) 2010-2013, University of Sussex
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the University of Sussex nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.ac.susx.tag.wag;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Set;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * An <tt>AliasHandler</tt> which writes aliases as delimiter-separated rows, producing exactly the same output as
+ * {@link WriteTabulatedAliasHandler} with the equivalent SuperCSV preferences.
+ * <p/>
+ * The column layout is worked out once, on construction, and each row is escaped straight into a reusable character
+ * buffer that is written to the underlying writer in large blocks. A cell is quoted when it contains the delimiter, the
+ * quote character, or a new line; quotes are doubled and new lines are replaced by the end-of-line symbols.
+ *
+ * @author Hamish Morgan
+ */
+@NotThreadSafe
+public class WriteDelimitedAliasHandler implements BatchAliasHandler, Flushable, Closeable {
+
+    private static final char QUOTE = '"';
+
+    private static final int INITIAL_BUFFER_SIZE = 16 * 1024;
+
+    /**
+     * Once this many characters are buffered they are written to the underlying writer.
+     */
+    private static final int FLUSH_THRESHOLD = 8 * 1024;
+
+    private final Writer writer;
+
+    private final char delimiter;
+
+    private final char[] endOfLine;
+
+    private final WriteTabulatedAliasHandler.Column[] columns;
+
+    /**
+     * Pre-escaped cell for each alias type, indexed by ordinal.
+     */
+    private final char[][] typeCells;
+
+    private char[] buffer = new char[INITIAL_BUFFER_SIZE];
+
+    private int length = 0;
+
+    /**
+     * Reusable copy of a string that is being escaped.
+     */
+    private char[] scratch = new char[256];
+
+    /**
+     * Cursor of the last batch handled, kept for reuse.
+     */
+    private AliasBatch.Cursor cursor = null;
+
+    /**
+     * @param writer    destination of the rows
+     * @param columns   columns to write, in {@link WriteTabulatedAliasHandler.Column} declaration order
+     * @param delimiter character that separates cells
+     * @param endOfLine characters that end each row
+     * @throws IllegalArgumentException if columns or endOfLine are empty, or the delimiter is the quote character
+     */
+    public WriteDelimitedAliasHandler(Writer writer, Set<WriteTabulatedAliasHandler.Column> columns,
+                                      char delimiter, String endOfLine) {
+        this.writer = checkNotNull(writer, "writer");
+        checkNotNull(columns, "columns");
+        checkArgument(!columns.isEmpty(), "columns is empty");
+        checkArgument(delimiter != QUOTE, "delimiter is the quote character");
+        checkArgument(!checkNotNull(endOfLine, "endOfLine").isEmpty(), "endOfLine is empty");
+        this.delimiter = delimiter;
+        this.endOfLine = endOfLine.toCharArray();
+
+        final WriteTabulatedAliasHandler.Column[] all = WriteTabulatedAliasHandler.Column.values();
+        final WriteTabulatedAliasHandler.Column[] ordered = new WriteTabulatedAliasHandler.Column[columns.size()];
+        int i = 0;
+        for (WriteTabulatedAliasHandler.Column column : all)
+            if (columns.contains(column))
+                ordered[i++] = column;
+        this.columns = ordered;
+
+        final AliasType[] types = AliasType.values();
+        typeCells = new char[types.length][];
+        for (AliasType type : types) {
+            appendEscaped(type.toString());
+            typeCells[type.ordinal()] = Arrays.copyOf(buffer, length);
+            length = 0;
+        }
+    }
+
+    /**
+     * Construct a new handler writing comma-separated rows, equivalent to
+     * {@link WriteTabulatedAliasHandler#newCsvInstance(Writer, java.util.EnumSet)}.
+     *
+     * @param writer  destination of the rows
+     * @param columns columns to write
+     * @return new handler
+     */
+    public static WriteDelimitedAliasHandler newCsvInstance(Writer writer, Set<WriteTabulatedAliasHandler.Column> columns) {
+        return new WriteDelimitedAliasHandler(writer, columns, ',', "\r\n");
+    }
+
+    /**
+     * Construct a new handler writing tab-separated rows, equivalent to
+     * {@link WriteTabulatedAliasHandler#newTsvInstance(Writer, java.util.EnumSet)}.
+     *
+     * @param writer  destination of the rows
+     * @param columns columns to write
+     * @return new handler
+     */
+    public static WriteDelimitedAliasHandler newTsvInstance(Writer writer, Set<WriteTabulatedAliasHandler.Column> columns) {
+        return new WriteDelimitedAliasHandler(writer, columns, '\t', "\n");
+    }
+
+    @Override
+    public void handle(Alias alias) {
+        appendRow(alias);
+        writeBufferIfFull();
+    }
+
+    @Override
+    public void handleAll(AliasBatch batch) {
+        cursor = batch.cursor(cursor);
+        while (cursor.next()) {
+            appendRow(cursor);
+            writeBufferIfFull();
+        }
+    }
+
+    private void appendRow(Alias alias) {
+        for (int i = 0; i < columns.length; i++) {
+            if (i > 0)
+                append(delimiter);
+            switch (columns[i]) {
+                case TYPE:
+                    append(typeCells[alias.getType().ordinal()]);
+                    break;
+                case SUBTYPE:
+                    appendEscaped(alias.getSubType());
+                    break;
+                case SOURCE:
+                    appendEscaped(alias.getSource());
+                    break;
+                case TARGET:
+                    appendEscaped(alias.getTarget());
+                    break;
+                case COUNT:
+                    appendDecimal(alias.getCount());
+                    break;
+                default:
+                    throw new AssertionError(columns[i]);
+            }
+        }
+        append(endOfLine);
+    }
+
+    /**
+     * Append the current alias of the cursor, reading it's text straight from the batch.
+     */
+    private void appendRow(AliasBatch.Cursor cursor) {
+        final char[] chars = cursor.getChars();
+        for (int i = 0; i < columns.length; i++) {
+            if (i > 0)
+                append(delimiter);
+            switch (columns[i]) {
+                case TYPE:
+                    append(typeCells[cursor.getType().ordinal()]);
+                    break;
+                case SUBTYPE:
+                    appendEscaped(cursor.getSubType());
+                    break;
+                case SOURCE:
+                    appendEscaped(chars, cursor.getSourceStart(), cursor.getSourceEnd());
+                    break;
+                case TARGET:
+                    appendEscaped(chars, cursor.getTargetStart(), cursor.getTargetEnd());
+                    break;
+                case COUNT:
+                    appendDecimal(cursor.getCount());
+                    break;
+                default:
+                    throw new AssertionError(columns[i]);
+            }
+        }
+        append(endOfLine);
+    }
+
+    private void writeBufferIfFull() {
+        if (length >= FLUSH_THRESHOLD) {
+            try {
+                writeBuffer();
+            } catch (IOException e) {
+                // XXX: Do something more sensible with exceptions
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        writeBuffer();
+        writer.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            writer.close();
+        }
+    }
+
+    private void writeBuffer() throws IOException {
+        if (length > 0) {
+            writer.write(buffer, 0, length);
+            length = 0;
+        }
+    }
+
+    private void ensureCapacity(int extra) {
+        if (length + extra > buffer.length)
+            buffer = Arrays.copyOf(buffer, Math.max(2 * buffer.length, length + extra));
+    }
+
+    private void append(char c) {
+        ensureCapacity(1);
+        buffer[length++] = c;
+    }
+
+    private void append(char[] chars) {
+        ensureCapacity(chars.length);
+        System.arraycopy(chars, 0, buffer, length, chars.length);
+        length += chars.length;
+    }
+
+    private void appendDecimal(long value) {
+        assert value >= 0;
+        ensureCapacity(19);
+        final int start = length;
+        do {
+            buffer[length++] = (char) ('0' + (int) (value % 10));
+            value /= 10;
+        } while (value != 0);
+        for (int i = start, j = length - 1; i < j; i++, j--) {
+            final char c = buffer[i];
+            buffer[i] = buffer[j];
+            buffer[j] = c;
+        }
+    }
+
+    private void appendEscaped(String value) {
+        final int n = value.length();
+        if (scratch.length < n)
+            scratch = new char[Math.max(n, 2 * scratch.length)];
+        value.getChars(0, n, scratch, 0);
+        appendEscaped(scratch, 0, n);
+    }
+
+    private void appendEscaped(char[] value, int start, int end) {
+        int i = start;
+        while (i < end) {
+            final char c = value[i];
+            if (c == delimiter || c == QUOTE || c == '\n')
+                break;
+            i++;
+        }
+
+        if (i == end) {
+            // Nothing to escape, so copy the value verbatim
+            ensureCapacity(end - start);
+            System.arraycopy(value, start, buffer, length, end - start);
+            length += end - start;
+            return;
+        }
+
+        ensureCapacity((end - start) * Math.max(2, endOfLine.length) + 2);
+        buffer[length++] = QUOTE;
+        System.arraycopy(value, start, buffer, length, i - start);
+        length += i - start;
+        for (; i < end; i++) {
+            final char c = value[i];
+            if (c == QUOTE) {
+                buffer[length++] = QUOTE;
+                buffer[length++] = QUOTE;
+            } else if (c == '\n') {
+                System.arraycopy(endOfLine, 0, buffer, length, endOfLine.length);
+                length += endOfLine.length;
+            } else {
+                buffer[length++] = c;
+            }
+        }
+        buffer[length++] = QUOTE;
+    }
+}
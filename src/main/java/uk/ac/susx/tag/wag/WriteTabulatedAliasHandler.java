@@ -15,7 +15,9 @@ import java.io.IOException;
 import java.io.Writer;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.EnumSet;
+import java.util.Set;
 
 /**
  * @author hiam20
@@ -48,6 +50,12 @@ public class WriteTabulatedAliasHandler implements AliasHandler, Flushable, Clos
             public Object getValue(Alias alias) {
                 return alias.getTarget();
             }
+        },
+        COUNT("count", new NotNull()) {
+            @Override
+            public Object getValue(Alias alias) {
+                return alias.getCount();
+            }
         };
 
         private final String header;
@@ -71,6 +79,12 @@ public class WriteTabulatedAliasHandler implements AliasHandler, Flushable, Clos
     }
 
 
+    /**
+     * Columns that are written unless others are selected; every column except {@link Column#COUNT}.
+     */
+    public static final Set<Column> DEFAULT_COLUMNS = Collections.unmodifiableSet(
+            EnumSet.of(Column.TYPE, Column.SUBTYPE, Column.SOURCE, Column.TARGET));
+
     private final Collection<Column> selectedColumns;// = EnumSet.allOf(Column.class);
 
     private final ICsvListWriter listWriter;
@@ -97,12 +111,12 @@ public class WriteTabulatedAliasHandler implements AliasHandler, Flushable, Clos
 
     public static AliasHandler newCsvInstance(Writer writer)
             throws IOException {
-        return newCsvInstance(writer, EnumSet.allOf(Column.class));
+        return newCsvInstance(writer, EnumSet.copyOf(DEFAULT_COLUMNS));
     }
 
     public static AliasHandler newTsvInstance(Writer writer)
             throws IOException {
-        return newTsvInstance(writer, EnumSet.allOf(Column.class));
+        return newTsvInstance(writer, EnumSet.copyOf(DEFAULT_COLUMNS));
     }
 
 
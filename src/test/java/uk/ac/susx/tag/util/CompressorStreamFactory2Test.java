@@ -354,6 +354,120 @@ public class CompressorStreamFactory2Test extends AbstractTest {
     }
 
 
+    /**
+     * Wrap the given output stream so that closing the wrapper flushes it but leaves it open.
+     */
+    private static OutputStream nonClosing(OutputStream outputStream) {
+        return new FilterOutputStream(outputStream) {
+            @Override
+            public void close() throws IOException {
+                flush();
+            }
+        };
+    }
+
+    /**
+     * Write the text file as a multi-stream BZip2 archive, compressing each slice of the text as a separate stream
+     * (like the Wikipedia pages-articles-multistream dumps.) An empty stream is included in the middle.
+     */
+    private static File createMultiStreamBZip2File(int numStreams) throws IOException {
+        final File outputFile = new File(OUTPUT_PATH, TEXT_FILE.getName() + ".multistream" + BZIP2_EXT);
+        final byte[] text = Files.toByteArray(TEXT_FILE);
+
+        final CompressorStreamFactory2 instance = CompressorStreamFactory2.builder()
+                .setBzip2BlockSize(1)
+                .build();
+
+        final Closer closer = Closer.create();
+        try {
+            final OutputStream os = closer.register(new BufferedOutputStream(
+                    closer.register(new FileOutputStream(outputFile))));
+            final int sliceLength = text.length / numStreams + 1;
+            for (int i = 0; i < numStreams; i++) {
+                if (i == numStreams / 2) {
+                    instance.createBZip2CompressorOutputStream(nonClosing(os)).close();
+                }
+                final int start = Math.min(text.length, i * sliceLength);
+                final int end = Math.min(text.length, start + sliceLength);
+                final CompressorOutputStream cos = instance.createBZip2CompressorOutputStream(nonClosing(os));
+                cos.write(text, start, end - start);
+                cos.close();
+            }
+        } catch (Throwable t) {
+            throw closer.rethrow(t);
+        } finally {
+            closer.close();
+        }
+        return outputFile;
+    }
+
+    @Test
+    public void testDecompressBZip2_Parallel() throws IOException, CompressorException {
+        final File inputFile = createMultiStreamBZip2File(8);
+        final File outputFile = new File(OUTPUT_PATH, inputFile.getName() + ".decompressed");
+
+        final CompressorStreamFactory2 instance = CompressorStreamFactory2.builder()
+                .setDecompressConcatenated(true)
+                .setBzip2DecompressionThreads(4)
+                .build();
+
+        final Closer closer = Closer.create();
+        try {
+            final CompressorInputStream cis =
+                    closer.register(instance.createCompressorInputStream(
+                            closer.register(new BufferedInputStream(
+                                    closer.register(new FileInputStream(inputFile))))));
+            assertTrue("Expecting parallel decompression.", cis instanceof ParallelBZip2CompressorInputStream);
+
+            final OutputStream os = closer.register(new BufferedOutputStream(
+                    closer.register(new FileOutputStream(outputFile))));
+
+            ByteStreams.copy(cis, os);
+        } catch (Throwable t) {
+            throw closer.rethrow(t);
+        } finally {
+            closer.close();
+        }
+        assertTrue("Output files differ.", Files.equal(outputFile, TEXT_FILE));
+    }
+
+    /**
+     * Decompress with the smallest possible chunks, so every stream is decompressed as a separate task, and check
+     * the output is still in order.
+     */
+    @Test
+    public void testDecompressBZip2_ParallelSmallChunks() throws IOException {
+        final File inputFile = createMultiStreamBZip2File(16);
+
+        final Closer closer = Closer.create();
+        try {
+            final InputStream cis = closer.register(new ParallelBZip2CompressorInputStream(
+                    closer.register(new FileInputStream(inputFile)), 4, 1, 1 << 20));
+            Assert.assertArrayEquals(Files.toByteArray(TEXT_FILE), ByteStreams.toByteArray(cis));
+        } catch (Throwable t) {
+            throw closer.rethrow(t);
+        } finally {
+            closer.close();
+        }
+    }
+
+    /**
+     * A single stream archive that is larger than the maximum chunk size should be decompressed sequentially.
+     */
+    @Test
+    public void testDecompressBZip2_ParallelSingleStream() throws IOException {
+        final Closer closer = Closer.create();
+        try {
+            final InputStream cis = closer.register(new ParallelBZip2CompressorInputStream(
+                    closer.register(new FileInputStream(BZIP2_FILE)), 4, 1024, 4096));
+            Assert.assertArrayEquals(Files.toByteArray(TEXT_FILE), ByteStreams.toByteArray(cis));
+        } catch (Throwable t) {
+            throw closer.rethrow(t);
+        } finally {
+            closer.close();
+        }
+    }
+
     @Test
     public void testDecompressGZip() throws IOException, CompressorException {
         final File outputFile = new File(OUTPUT_PATH, GZIP_FILE.getName() + ".decompressed");
@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2010-2013, University of Sussex
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the University of Sussex nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.ac.susx.tag.util;
+
+import com.google.common.base.Charsets;
+import org.junit.Test;
+import uk.ac.susx.tag.test.AbstractTest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+
+/**
+ * Unit tests for the {@link Utf8ChannelWriter} class.
+ *
+ * @author Hamish Morgan
+ */
+public class Utf8ChannelWriterTest extends AbstractTest {
+
+    /**
+     * Characters chosen to hit every encoded length, as well as paired and unpaired surrogates.
+     */
+    private static final char[] ALPHABET = {
+            'a', 'Z', '\t', '\n', '\u00e9', '\u07ff', '\u0800', '\u20ac', '\uffff',
+            '\ud83d', '\ude00', '\ud800', '\udfff'};
+
+    @Test
+    public void testMatchesOutputStreamWriter() throws Exception {
+        final Random random = new Random(0);
+        for (int trial = 0; trial < 200; trial++) {
+            final char[] chars = new char[random.nextInt(2000)];
+            for (int i = 0; i < chars.length; i++)
+                chars[i] = random.nextBoolean() ? 'x' : ALPHABET[random.nextInt(ALPHABET.length)];
+
+            final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+            final Writer reference = new OutputStreamWriter(expected, Charsets.UTF_8);
+            reference.write(chars);
+            reference.close();
+
+            // Split the input into random writes, through a small buffer, so pairs straddle writes and drains
+            final ByteArrayOutputStream actual = new ByteArrayOutputStream();
+            final Writer writer = new Utf8ChannelWriter(Channels.newChannel(actual), 4 + random.nextInt(64));
+            int offset = 0;
+            while (offset < chars.length) {
+                final int length = Math.min(chars.length - offset, random.nextInt(50));
+                if (random.nextBoolean())
+                    writer.write(chars, offset, length);
+                else
+                    writer.write(new String(chars, offset, length));
+                if (random.nextInt(10) == 0)
+                    writer.flush();
+                offset += length;
+            }
+            writer.close();
+
+            assertArrayEquals("Output differs for input " + Arrays.toString(chars),
+                    expected.toByteArray(), actual.toByteArray());
+        }
+    }
+}
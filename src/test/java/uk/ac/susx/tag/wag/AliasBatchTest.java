@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2010-2013, University of Sussex
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the University of Sussex nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.ac.susx.tag.wag;
+
+import com.beust.jcommander.internal.Lists;
+import org.junit.Test;
+import uk.ac.susx.tag.test.AbstractTest;
+
+import java.util.List;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+/**
+ * Unit tests for the {@link AliasBatch} class.
+ *
+ * @author Hamish Morgan
+ */
+public class AliasBatchTest extends AbstractTest {
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        // Aliases should survive the columnar representation, however they are added and read back
+        final List<Alias> aliases = Lists.newArrayList();
+        aliases.add(new Alias(AliasType.LINK, "", "Foo", "Bar"));
+        aliases.add(new Alias(AliasType.HAT_NOTE, "About", "", "Baz \u00e9\ud83d\ude00"));
+        aliases.add(new Alias(AliasType.REDIRECT, "", "Qux", "", 7));
+        aliases.add(new Alias(AliasType.HAT_NOTE, "For", "a", "b"));
+        aliases.add(new Alias(AliasType.TITLE, "About", "c", "c", 2));
+
+        final AliasBatch other = new AliasBatch(0);
+        other.add(new Alias(AliasType.P1BOLD, "For", "x", "y"));
+
+        final AliasBatch batch = new AliasBatch(1);
+        AliasBatch.Cursor cursor = null;
+        for (int round = 0; round < 2; round++) {
+            // Offset the subtype codes of the other batch from this one
+            batch.addAll(other);
+            batch.add(aliases.get(0));
+            final Alias second = aliases.get(1);
+            final char[] text = (second.getTarget() + second.getSource()).toCharArray();
+            batch.add(second.getType(), second.getSubType(), text, second.getTarget().length(), text.length,
+                    0, second.getTarget().length(), second.getCount());
+            final AliasBatch tail = new AliasBatch();
+            for (Alias alias : aliases)
+                tail.add(alias);
+            batch.addAll(tail, 2, aliases.size());
+
+            final List<Alias> expected = Lists.newArrayList();
+            expected.add(other.get(0));
+            expected.addAll(aliases);
+            assertEquals(expected.size(), batch.size());
+
+            final AliasBatch.Cursor previous = cursor;
+            cursor = batch.cursor(cursor);
+            assertTrue(previous == null || previous == cursor);
+            assertTrue(other.cursor(cursor) != cursor);
+            for (Alias alias : expected) {
+                assertTrue(cursor.next());
+                assertEquals(alias, batch.get(cursor.getIndex()));
+                assertEquals(alias, cursor.toAlias());
+                assertEquals(alias.getType(), cursor.getType());
+                assertEquals(alias.getSubType(), cursor.getSubType());
+                assertEquals(alias.getCount(), cursor.getCount());
+                assertEquals(alias.getSource(), new String(cursor.getChars(),
+                        cursor.getSourceStart(), cursor.getSourceEnd() - cursor.getSourceStart()));
+                assertEquals(alias.getTarget(), new String(cursor.getChars(),
+                        cursor.getTargetStart(), cursor.getTargetEnd() - cursor.getTargetStart()));
+            }
+            assertTrue(!cursor.next());
+
+            batch.clear();
+            assertTrue(batch.isEmpty());
+        }
+    }
+
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2010-2013, University of Sussex
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the University of Sussex nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.ac.susx.tag.wag;
+
+import com.beust.jcommander.internal.Lists;
+import org.junit.Test;
+import uk.ac.susx.tag.test.AbstractTest;
+
+import java.util.List;
+
+import static junit.framework.Assert.assertEquals;
+
+/**
+ * Unit tests for the {@link SpaceTrimmingAliasHandlerAdapter} class.
+ *
+ * @author Hamish Morgan
+ */
+public class SpaceTrimmingAliasHandlerAdapterTest extends AbstractTest {
+
+    @Test
+    public void testTrimming() throws Exception {
+        // The source and target should each be stripped, keeping the count, and aliases with either empty dropped,
+        // whether the aliases arrive one at a time or as a batch
+        final AliasBatch batch = new AliasBatch();
+        batch.add(new Alias(AliasType.LINK, "", "  foo \t bar ", "\nbaz  qux\u00a0", 3));
+        batch.add(new Alias(AliasType.LINK, "", "foo", " \t "));
+        batch.add(new Alias(AliasType.REDIRECT, "", "\u3000", "bar"));
+        batch.add(new Alias(AliasType.TITLE, "", "a", "  b  "));
+
+        final List<Alias> expected = Lists.newArrayList();
+        expected.add(new Alias(AliasType.LINK, "", "foo bar", "baz qux", 3));
+        expected.add(new Alias(AliasType.TITLE, "", "a", "b"));
+
+        final List<Alias> actual = Lists.newArrayList();
+        final SpaceTrimmingAliasHandlerAdapter trimmer = new SpaceTrimmingAliasHandlerAdapter(new AliasHandler() {
+            @Override
+            public void handle(Alias alias) {
+                actual.add(alias);
+            }
+        });
+        for (int i = 0; i < batch.size(); i++)
+            trimmer.handle(batch.get(i));
+        assertEquals(expected, actual);
+
+        actual.clear();
+        trimmer.handleAll(batch);
+        assertEquals(expected, actual);
+    }
+
+}
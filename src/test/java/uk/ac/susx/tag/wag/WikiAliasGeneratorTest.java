@@ -1,12 +1,29 @@
 package uk.ac.susx.tag.wag;
 
 import com.beust.jcommander.internal.Lists;
+import com.google.common.base.Charsets;
+import com.google.common.io.CharStreams;
+import com.google.common.io.Closer;
+import com.google.common.io.CountingOutputStream;
+import com.google.common.io.Files;
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorOutputStream;
 import org.junit.Test;
 import uk.ac.susx.tag.test.AbstractTest;
+import uk.ac.susx.tag.util.IOUtils;
 
+import java.io.*;
 import java.net.URL;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import static junit.framework.Assert.assertEquals;
 import static junit.framework.Assert.assertTrue;
@@ -17,6 +34,11 @@ import static junit.framework.Assert.assertTrue;
  */
 public class WikiAliasGeneratorTest extends AbstractTest {
 
+    /**
+     * Produced namespaces setting under which pages from every namespace are processed.
+     */
+    static final Set<Integer> ALL_NAMESPACES = Collections.emptySet();
+
 
 //        Wikipedia-Jaccard_Distance.xml
     //Wikipedia-AccessibleComputing.xml
@@ -261,4 +283,550 @@ public class WikiAliasGeneratorTest extends AbstractTest {
         System.out.println(aliases);
     }
 
+
+    @Test
+    public void testParallelWorkers() throws Exception {
+        // Multiple worker threads should produce exactly the same aliases, in the same order, as a single thread.
+        final URL pageUrl = getClass().getResource("Wikipedia-A.xml");
+
+        final List<Alias> expected = generate(pageUrl, EnumSet.allOf(AliasType.class), ALL_NAMESPACES);
+
+        final List<Alias> actual = Lists.newArrayList();
+        final WikiAliasGenerator parallel = new WikiAliasGenerator(
+                new AliasHandler() {
+                    @Override
+                    public void handle(Alias alias) {
+                        actual.add(alias);
+                    }
+                }, EnumSet.allOf(AliasType.class));
+        parallel.setNumWorkerThreads(4);
+        parallel.setPageQueueCapacity(8);
+        parallel.setReorderWindow(16);
+        parallel.setProducedNamespaces(ALL_NAMESPACES);
+        parallel.process(pageUrl, -1);
+
+        assertTrue("Expected some aliases to be produced.", !expected.isEmpty());
+        assertEquals("Unexpected aliases produced.", expected, actual);
+    }
+
+    @Test
+    public void testRedirectFastPath() throws Exception {
+        // Recognising redirects without parsing them should produce exactly the same aliases as the parser.
+        final URL pageUrl = getClass().getResource("Wikipedia-A.xml");
+
+        final List<Alias> expected = Lists.newArrayList();
+        final WikiAliasGenerator parsed = new WikiAliasGenerator(
+                new AliasHandler() {
+                    @Override
+                    public void handle(Alias alias) {
+                        expected.add(alias);
+                    }
+                }, EnumSet.allOf(AliasType.class));
+        parsed.setRedirectFastPathEnabled(false);
+        parsed.setProducedNamespaces(ALL_NAMESPACES);
+        parsed.process(pageUrl, -1);
+
+        final List<Alias> actual = generate(pageUrl, EnumSet.allOf(AliasType.class), ALL_NAMESPACES);
+
+        boolean redirectFound = false;
+        for (Alias alias : expected)
+            redirectFound |= alias.getType() == AliasType.REDIRECT;
+        assertTrue("Expected some redirects to be produced.", redirectFound);
+        assertEquals("Unexpected aliases produced.", expected, actual);
+    }
+
+    @Test
+    public void testNamespaceFilter() throws Exception {
+        // By default only main namespace pages should be processed; the resource also contains many templates
+        final URL pageUrl = getClass().getResource("Wikipedia-A.xml");
+
+        final List<Alias> all = generate(pageUrl, EnumSet.allOf(AliasType.class), ALL_NAMESPACES, true);
+        final List<Alias> main = generate(pageUrl, EnumSet.allOf(AliasType.class),
+                WikiAliasGenerator.DEFAULT_producedNamespaces, true);
+
+        assertTrue("Expected some aliases to be produced.", !main.isEmpty());
+        assertTrue("Expected fewer aliases from the main namespace only.", main.size() < all.size());
+        assertTrue("Unexpected aliases produced.", all.containsAll(main));
+        assertTrue("Expected the title of the main page.", main.contains(
+                new Alias(AliasType.TITLE, Alias.NO_SUBTYPE, "A", "A")));
+    }
+
+    @Test
+    public void testPartialParsing() throws Exception {
+        // Types that need only part of each page should produce exactly the aliases of a full parse
+        final URL pageUrl = getClass().getResource("Wikipedia-A.xml");
+
+        final List<Alias> all = generate(pageUrl, EnumSet.allOf(AliasType.class), ALL_NAMESPACES, true);
+
+        final List<EnumSet<AliasType>> partialTypes = Lists.newArrayList(
+                EnumSet.of(AliasType.TITLE),
+                EnumSet.of(AliasType.TITLE, AliasType.REDIRECT),
+                EnumSet.of(AliasType.S1BOLD),
+                EnumSet.of(AliasType.TITLE, AliasType.P1BOLD, AliasType.P2BOLD, AliasType.S1BOLD));
+        for (final EnumSet<AliasType> types : partialTypes) {
+            final List<Alias> expected = Lists.newArrayList();
+            for (Alias alias : all)
+                if (types.contains(alias.getType()))
+                    expected.add(alias);
+
+            final List<Alias> actual = generate(pageUrl, types, ALL_NAMESPACES, true);
+            assertEquals("Aliases differ for types " + types, expected, actual);
+        }
+    }
+
+    @Test
+    public void testTemplateAliasRules() throws Exception {
+        final URL pageUrl = getClass().getResource("Wikipedia-Acid.xml");
+        final Alias expected = new Alias(AliasType.HAT_NOTE, "main", "Acid", "Acid strength");
+
+        final List<Alias> standard = generate(pageUrl, EnumSet.of(AliasType.HAT_NOTE),
+                WikiAliasGenerator.DEFAULT_producedNamespaces);
+        assertTrue("Unexpected alias from unhandled template.", !standard.contains(expected));
+
+        final List<TemplateAliasRule> rules = TemplateAliasRules.read(CharStreams.asCharSource(
+                "# Main article links\n" +
+                        "Main|Main article\tHAT_NOTE\t1-\tfrom-title\n"));
+        assertEquals(1, rules.size());
+
+        final List<Alias> extended = Lists.newArrayList();
+        final WikiAliasGenerator extendedRules = new WikiAliasGenerator(
+                new AliasHandler() {
+                    @Override
+                    public void handle(Alias alias) {
+                        extended.add(alias);
+                    }
+                }, EnumSet.of(AliasType.HAT_NOTE));
+        extendedRules.setTemplateAliasRules(rules);
+        extendedRules.process(pageUrl, -1);
+        assertTrue("Expected alias from template rule.", extended.contains(expected));
+        assertTrue("Expected standard aliases to be kept.", extended.containsAll(standard));
+    }
+
+    @Test
+    public void testDeduplication() throws Exception {
+        // Each distinct alias should be produced once, in the order it was first seen, however often it spills
+        final URL pageUrl = getClass().getResource("Wikipedia-A.xml");
+
+        final List<Alias> all = generate(pageUrl, EnumSet.allOf(AliasType.class), ALL_NAMESPACES, true);
+        final List<Alias> expected = Lists.newArrayList(new LinkedHashSet<Alias>(all));
+        assertTrue("Expected some duplicate aliases.", expected.size() < all.size());
+
+        final File tempDirectory = new File(System.getProperty("java.io.tmpdir"));
+        for (long memoryBudget : new long[]{1, 1000, 100000, DeduplicatingAliasHandler.DEFAULT_MEMORY_BUDGET}) {
+            for (int mergeWidth : new int[]{2, DeduplicatingAliasHandler.DEFAULT_MERGE_WIDTH}) {
+                for (int batchSize : new int[]{0, 1, 7, 1000}) {
+                    final List<Alias> distinct = Lists.newArrayList();
+                    final DeduplicatingAliasHandler deduplicator = new DeduplicatingAliasHandler(
+                            new AliasHandler() {
+                                @Override
+                                public void handle(Alias alias) {
+                                    distinct.add(alias);
+                                }
+                            }, memoryBudget, mergeWidth, tempDirectory);
+                    if (batchSize == 0) {
+                        for (int i = 0; i < all.size(); i++) {
+                            deduplicator.handle(all.get(i));
+                            // Flushing part way through should make no difference
+                            if (i == all.size() / 2)
+                                deduplicator.flush();
+                        }
+                    } else {
+                        final AliasBatch batch = new AliasBatch();
+                        for (int i = 0; i < all.size(); i += batchSize) {
+                            for (Alias alias : all.subList(i, Math.min(i + batchSize, all.size())))
+                                batch.add(alias);
+                            deduplicator.handleAll(batch);
+                            batch.clear();
+                        }
+                    }
+                    deduplicator.close();
+                    assertEquals("Unexpected aliases with memory budget " + memoryBudget + ", merge width "
+                            + mergeWidth + " and batch size " + batchSize, expected, distinct);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testAggregation() throws Exception {
+        // Each distinct alias should be produced once, with it's number of occurrences, however often it spills
+        final URL pageUrl = getClass().getResource("Wikipedia-A.xml");
+
+        final List<Alias> all = generate(pageUrl, EnumSet.allOf(AliasType.class), ALL_NAMESPACES, true);
+
+        final Map<Alias, Integer> counts = new HashMap<Alias, Integer>();
+        for (Alias alias : all)
+            counts.put(alias, counts.containsKey(alias) ? counts.get(alias) + 1 : 1);
+        final List<Alias> expected = Lists.newArrayList();
+        for (Map.Entry<Alias, Integer> entry : counts.entrySet()) {
+            final Alias alias = entry.getKey();
+            expected.add(new Alias(alias.getType(), alias.getSubType(), alias.getSource(), alias.getTarget(),
+                    entry.getValue()));
+        }
+        Collections.sort(expected, AggregatingAliasHandler.ALIAS_ORDER);
+        assertTrue("Expected some repeated aliases.", expected.size() < all.size());
+
+        for (long memoryBudget : new long[]{1, 10000, AggregatingAliasHandler.DEFAULT_MEMORY_BUDGET}) {
+            final List<Alias> aggregated = Lists.newArrayList();
+            final AggregatingAliasHandler aggregator = new AggregatingAliasHandler(
+                    new AliasHandler() {
+                        @Override
+                        public void handle(Alias alias) {
+                            aggregated.add(alias);
+                        }
+                    }, memoryBudget);
+            for (Alias alias : all)
+                aggregator.handle(alias);
+            aggregator.close();
+            assertEquals("Unexpected aliases with memory budget " + memoryBudget, expected, aggregated);
+        }
+    }
+
+    @Test
+    public void testSorting() throws Exception {
+        // Sorted output should match an in-memory stable sort, however often it spills and however narrow the merge
+        final URL pageUrl = getClass().getResource("Wikipedia-A.xml");
+
+        final List<Alias> all = generate(pageUrl, EnumSet.allOf(AliasType.class), ALL_NAMESPACES);
+
+        final List<WriteTabulatedAliasHandler.Column> sortKey = Arrays.asList(
+                WriteTabulatedAliasHandler.Column.TARGET, WriteTabulatedAliasHandler.Column.TYPE);
+        final List<Alias> expected = Lists.newArrayList(all);
+        Collections.sort(expected, SortingAliasHandler.orderBy(sortKey));
+
+        // Text is in UTF-8 byte order, so supplementary characters come last, and types are in name order
+        final Comparator<Alias> byTarget = SortingAliasHandler.orderBy(
+                Arrays.asList(WriteTabulatedAliasHandler.Column.TARGET));
+        assertTrue(byTarget.compare(new Alias(AliasType.LINK, "", "a", "\uff21"),
+                new Alias(AliasType.LINK, "", "a", "\ud83d\ude00")) < 0);
+        assertTrue(byTarget.compare(new Alias(AliasType.LINK, "", "a", "\ud83d\ude00"),
+                new Alias(AliasType.LINK, "", "a", "\ud83d\ude00!")) < 0);
+        final Comparator<Alias> byType = SortingAliasHandler.orderBy(
+                Arrays.asList(WriteTabulatedAliasHandler.Column.TYPE));
+        assertTrue(byType.compare(new Alias(AliasType.TITLE, "", "a", "b"),
+                new Alias(AliasType.LINK, "", "a", "b")) > 0);
+
+        for (long memoryBudget : new long[]{1, 10000, SortingAliasHandler.DEFAULT_MEMORY_BUDGET}) {
+            for (int mergeWidth : new int[]{2, SortingAliasHandler.DEFAULT_MERGE_WIDTH}) {
+                final List<Alias> sorted = Lists.newArrayList();
+                final SortingAliasHandler sorter = new SortingAliasHandler(
+                        new AliasHandler() {
+                            @Override
+                            public void handle(Alias alias) {
+                                sorted.add(alias);
+                            }
+                        }, sortKey, memoryBudget, mergeWidth);
+                for (Alias alias : all)
+                    sorter.handle(alias);
+                sorter.close();
+                assertEquals("Unexpected aliases with memory budget " + memoryBudget
+                        + " and merge width " + mergeWidth, expected, sorted);
+            }
+        }
+    }
+
+    @Test
+    public void testBatchedOutput() throws Exception {
+        // Batch handlers should receive the same aliases, in whole pages of at least the batch size (bar the last)
+        final URL pageUrl = getClass().getResource("Wikipedia-A.xml");
+
+        final List<Alias> expected = generate(pageUrl, EnumSet.allOf(AliasType.class), ALL_NAMESPACES);
+
+        for (int batchSize : new int[]{1, 10, 1000000}) {
+            final List<Alias> actual = Lists.newArrayList();
+            final List<Integer> batchSizes = Lists.newArrayList();
+            final WikiAliasGenerator batched = new WikiAliasGenerator(
+                    new BatchAliasHandler() {
+                        @Override
+                        public void handleAll(AliasBatch batch) {
+                            batchSizes.add(batch.size());
+                            for (int i = 0; i < batch.size(); i++)
+                                actual.add(batch.get(i));
+                        }
+
+                        @Override
+                        public void handle(Alias alias) {
+                            throw new AssertionError("Expected batches only");
+                        }
+                    }, EnumSet.allOf(AliasType.class));
+            batched.setBatchSize(batchSize);
+            batched.setProducedNamespaces(ALL_NAMESPACES);
+            batched.process(pageUrl, -1);
+
+            assertEquals("Unexpected aliases with batch size " + batchSize, expected, actual);
+            for (int i = 0; i < batchSizes.size() - 1; i++)
+                assertTrue("Batch too small: " + batchSizes.get(i), batchSizes.get(i) >= batchSize);
+        }
+    }
+
+    @Test
+    public void testAsyncWriting() throws Exception {
+        // Aliases should be forwarded in order, whatever the batch size and queue length
+        final URL pageUrl = getClass().getResource("Wikipedia-A.xml");
+
+        final List<Alias> expected = generate(pageUrl, EnumSet.allOf(AliasType.class), ALL_NAMESPACES);
+        for (int[] config : new int[][]{{1, 1}, {7, 2}, {AsyncAliasHandler.DEFAULT_BATCH_SIZE, 1}}) {
+            final List<Alias> actual = Collections.synchronizedList(Lists.<Alias>newArrayList());
+            final AsyncAliasHandler async = new AsyncAliasHandler(
+                    new AliasHandler() {
+                        @Override
+                        public void handle(Alias alias) {
+                            actual.add(alias);
+                        }
+                    }, config[0], config[1]);
+            final WikiAliasGenerator instance = new WikiAliasGenerator(async, EnumSet.allOf(AliasType.class));
+            instance.setProducedNamespaces(ALL_NAMESPACES);
+            instance.process(pageUrl, -1);
+
+            async.flush();
+            assertEquals("Unexpected aliases after flush with config " + Arrays.toString(config), expected, actual);
+            async.close();
+            assertEquals("Unexpected aliases after close with config " + Arrays.toString(config), expected, actual);
+        }
+    }
+
+    @Test
+    public void testFanOut() throws Exception {
+        // Every output should receive all the aliases of it's types, in order, from a single pass
+        final URL pageUrl = getClass().getResource("Wikipedia-A.xml");
+
+        final List<Alias> expected = generate(pageUrl, EnumSet.allOf(AliasType.class), ALL_NAMESPACES);
+        final List<Alias> expectedLinks = generate(pageUrl, EnumSet.of(AliasType.LINK), ALL_NAMESPACES);
+
+        final List<Alias> all = Lists.newArrayList();
+        final List<Alias> links = Lists.newArrayList();
+        final FanOutAliasHandler fanOut = new FanOutAliasHandler(Arrays.asList(
+                new AsyncAliasHandler(new AliasHandler() {
+                    @Override
+                    public void handle(Alias alias) {
+                        all.add(alias);
+                    }
+                }, 7, 2),
+                new TypeFilteringAliasHandler(new AsyncAliasHandler(new AliasHandler() {
+                    @Override
+                    public void handle(Alias alias) {
+                        links.add(alias);
+                    }
+                }, 3, 1), EnumSet.of(AliasType.LINK))));
+        final WikiAliasGenerator generator = new WikiAliasGenerator(fanOut, EnumSet.allOf(AliasType.class));
+        generator.setBatchSize(10);
+        generator.setProducedNamespaces(ALL_NAMESPACES);
+        generator.process(pageUrl, -1);
+        fanOut.close();
+
+        assertEquals(expected, all);
+        assertTrue(!expectedLinks.isEmpty());
+        assertEquals(expectedLinks, links);
+    }
+
+    @Test
+    public void testSharding() throws Exception {
+        // Each shard should receive exactly it's own aliases, in order, whether they arrive in batches or not
+        final URL pageUrl = getClass().getResource("Wikipedia-A.xml");
+
+        final List<Alias> expected = generate(pageUrl, EnumSet.allOf(AliasType.class), ALL_NAMESPACES);
+
+        final int numShards = 5;
+        for (int batchSize : new int[]{1, 100}) {
+            final Map<AliasType, List<Alias>> byType = new HashMap<AliasType, List<Alias>>();
+            final Map<AliasType, AliasHandler> typeShards = new HashMap<AliasType, AliasHandler>();
+            for (final AliasType type : AliasType.values()) {
+                byType.put(type, Lists.<Alias>newArrayList());
+                typeShards.put(type, new AliasHandler() {
+                    @Override
+                    public void handle(Alias alias) {
+                        byType.get(type).add(alias);
+                    }
+                });
+            }
+            final List<List<Alias>> bySource = Lists.newArrayList();
+            final List<AliasHandler> sourceShards = Lists.newArrayList();
+            for (int i = 0; i < numShards; i++) {
+                final List<Alias> shard = Lists.newArrayList();
+                bySource.add(shard);
+                sourceShards.add(new AliasHandler() {
+                    @Override
+                    public void handle(Alias alias) {
+                        shard.add(alias);
+                    }
+                });
+            }
+
+            final WikiAliasGenerator generator = new WikiAliasGenerator(new FanOutAliasHandler(Arrays.asList(
+                    ShardingAliasHandler.byType(typeShards), ShardingAliasHandler.bySource(sourceShards))),
+                    EnumSet.allOf(AliasType.class));
+            generator.setBatchSize(batchSize);
+            generator.setProducedNamespaces(ALL_NAMESPACES);
+            generator.process(pageUrl, -1);
+
+            for (AliasType type : AliasType.values()) {
+                final List<Alias> expectedShard = Lists.newArrayList();
+                for (Alias alias : expected)
+                    if (alias.getType() == type)
+                        expectedShard.add(alias);
+                assertEquals(expectedShard, byType.get(type));
+            }
+            for (int i = 0; i < numShards; i++) {
+                final List<Alias> expectedShard = Lists.newArrayList();
+                for (Alias alias : expected)
+                    if (ShardingAliasHandler.shardOf(alias.getSource(), numShards) == i)
+                        expectedShard.add(alias);
+                assertTrue(!expectedShard.isEmpty());
+                assertEquals(expectedShard, bySource.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void testAliasLengthLimits() throws Exception {
+        final URL pageUrl = getClass().getResource("Wikipedia-A.xml");
+        final int maxWords = 2;
+        final int maxChars = 12;
+
+        final List<Alias> aliases = Lists.newArrayList();
+        final WikiAliasGenerator generator = new WikiAliasGenerator(
+                new AliasHandler() {
+                    @Override
+                    public void handle(Alias alias) {
+                        aliases.add(alias);
+                    }
+                }, EnumSet.copyOf(AliasType.STANDARD));
+        generator.setMaxAliasWords(maxWords);
+        generator.setMaxAliasChars(maxChars);
+        generator.setProducedNamespaces(ALL_NAMESPACES);
+        generator.process(pageUrl, -1);
+
+        assertTrue("Expected some aliases within the limits.", !aliases.isEmpty());
+        for (Alias alias : aliases) {
+            for (String text : new String[]{alias.getSource(), alias.getTarget()}) {
+                assertTrue("Alias too long: " + alias, text.length() <= maxChars);
+                assertTrue("Alias has too many words: " + alias, text.split("\\s+").length <= maxWords);
+            }
+        }
+    }
+
+    /**
+     * Generate aliases of the given types from every page of the given XML dump.
+     */
+    static List<Alias> generate(URL pageUrl, EnumSet<AliasType> types, Set<Integer> namespaces) throws Exception {
+        return generate(pageUrl, types, namespaces, false);
+    }
+
+    static List<Alias> generate(URL pageUrl, EnumSet<AliasType> types, Set<Integer> namespaces,
+                                boolean identityAliasesProduced) throws Exception {
+        final List<Alias> aliases = Lists.newArrayList();
+        final WikiAliasGenerator generator = new WikiAliasGenerator(
+                new AliasHandler() {
+                    @Override
+                    public void handle(Alias alias) {
+                        aliases.add(alias);
+                    }
+                }, types);
+        generator.setIdentityAliasesProduced(identityAliasesProduced);
+        generator.setProducedNamespaces(namespaces);
+        generator.process(pageUrl, -1);
+        return aliases;
+    }
+
+    /**
+     * Write the given XML dump as a multi-stream BZip2 dump, with pagesPerStream pages in each stream, along with it's
+     * index (in the same form as the Wikipedia pages-articles-multistream dumps.)
+     */
+    private static void createMultistreamDump(File xmlFile, int pagesPerStream, File dumpFile, File indexFile)
+            throws IOException {
+        final String xml = Files.toString(xmlFile, Charsets.UTF_8);
+        final int pagesStart = xml.lastIndexOf('\n', xml.indexOf("<page>")) + 1;
+        final int pagesEnd = xml.lastIndexOf("</page>") + "</page>\n".length();
+
+        final Closer closer = Closer.create();
+        try {
+            final CountingOutputStream dump = closer.register(new CountingOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(dumpFile))));
+            final Writer index = closer.register(new OutputStreamWriter(new BZip2CompressorOutputStream(
+                    new FileOutputStream(indexFile)), Charsets.UTF_8));
+
+            writeStream(dump, xml.substring(0, pagesStart));
+
+            final Matcher titles = Pattern.compile("<title>(.*?)</title>").matcher(xml);
+            int pageId = 0;
+            int start = pagesStart;
+            while (start < pagesEnd) {
+                int end = start;
+                for (int i = 0; i < pagesPerStream && end < pagesEnd; i++)
+                    end = xml.indexOf("</page>", end) + "</page>\n".length();
+
+                final long offset = dump.getCount();
+                titles.region(start, end);
+                while (titles.find())
+                    index.write(offset + ":" + (++pageId) + ":" + titles.group(1) + "\n");
+                writeStream(dump, xml.substring(start, end));
+                start = end;
+            }
+
+            writeStream(dump, xml.substring(pagesEnd));
+        } catch (Throwable t) {
+            throw closer.rethrow(t);
+        } finally {
+            closer.close();
+        }
+    }
+
+    private static void writeStream(OutputStream out, String text) throws IOException {
+        final OutputStream bzip2 = new BZip2CompressorOutputStream(new FilterOutputStream(out) {
+            @Override
+            public void close() throws IOException {
+                flush();
+            }
+        });
+        bzip2.write(text.getBytes(Charsets.UTF_8));
+        bzip2.close();
+    }
+
+    @Test
+    public void testMultistreamIndex() throws Exception {
+        // Processing ranges of a multi-stream dump independently should produce exactly the same aliases, in the
+        // same order, as processing the XML sequentially.
+        final File xmlFile = new File(getClass().getResource("Wikipedia-A.xml").toURI());
+        final File outputDir = new File(IOUtils.combinePath(
+                "target", "test", "output", "uk", "ac", "susx", "tag", "wag"));
+        if (!outputDir.exists() && !outputDir.mkdirs())
+            throw new IOException("Failed to create output dir: " + outputDir);
+        final File dumpFile = new File(outputDir, "Wikipedia-A-multistream.xml.bz2");
+        final File indexFile = new File(outputDir, "Wikipedia-A-multistream-index.txt.bz2");
+        createMultistreamDump(xmlFile, 7, dumpFile, indexFile);
+
+        final MultistreamIndex index = MultistreamIndex.read(indexFile);
+        assertEquals(97, index.getPageCount());
+        assertEquals(14, index.getStreamCount());
+
+        for (int limit : new int[]{-1, 25}) {
+            final List<Alias> expected = Lists.newArrayList();
+            final WikiAliasGenerator serial = new WikiAliasGenerator(
+                    new AliasHandler() {
+                        @Override
+                        public void handle(Alias alias) {
+                            expected.add(alias);
+                        }
+                    }, EnumSet.allOf(AliasType.class));
+            serial.setProducedNamespaces(ALL_NAMESPACES);
+            serial.process(xmlFile, limit);
+
+            final List<Alias> actual = Lists.newArrayList();
+            final WikiAliasGenerator indexed = new WikiAliasGenerator(
+                    new AliasHandler() {
+                        @Override
+                        public void handle(Alias alias) {
+                            actual.add(alias);
+                        }
+                    }, EnumSet.allOf(AliasType.class));
+            indexed.setNumWorkerThreads(3);
+            indexed.setStreamsPerRange(2);
+            indexed.setProducedNamespaces(ALL_NAMESPACES);
+            indexed.process(dumpFile, index, limit);
+
+            assertTrue("Expected some aliases to be produced.", !expected.isEmpty());
+            assertEquals("Unexpected aliases produced.", expected, actual);
+        }
+    }
+
 }
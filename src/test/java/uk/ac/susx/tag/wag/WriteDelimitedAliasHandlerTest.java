@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2010-2013, University of Sussex
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ *  * Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ *
+ *  * Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ *  * Neither the name of the University of Sussex nor the names of its
+ *    contributors may be used to endorse or promote products derived from this
+ *    software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package uk.ac.susx.tag.wag;
+
+import org.junit.Test;
+import uk.ac.susx.tag.test.AbstractTest;
+
+import java.io.StringWriter;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+
+import static junit.framework.Assert.assertEquals;
+
+/**
+ * Unit tests for the {@link WriteDelimitedAliasHandler} class.
+ *
+ * @author Hamish Morgan
+ */
+public class WriteDelimitedAliasHandlerTest extends AbstractTest {
+
+    @Test
+    public void testMatchesSuperCsv() throws Exception {
+        // The hand-rolled writer should produce byte-identical output to the SuperCSV writer
+        final URL pageUrl = getClass().getResource("Wikipedia-A.xml");
+
+        final List<Alias> aliases = WikiAliasGeneratorTest.generate(pageUrl, EnumSet.allOf(AliasType.class),
+                WikiAliasGeneratorTest.ALL_NAMESPACES);
+        for (String awkward : new String[]{"", " padded ", "a,b", "a\tb", "\"quoted\"", "line\nbreak", "cr\rlf\r\n"})
+            aliases.add(new Alias(AliasType.LINK, awkward, awkward, awkward, 12345678901L));
+
+        final List<EnumSet<WriteTabulatedAliasHandler.Column>> layouts = Arrays.asList(
+                EnumSet.copyOf(WriteTabulatedAliasHandler.DEFAULT_COLUMNS),
+                EnumSet.allOf(WriteTabulatedAliasHandler.Column.class),
+                EnumSet.of(WriteTabulatedAliasHandler.Column.COUNT, WriteTabulatedAliasHandler.Column.SOURCE));
+        for (EnumSet<WriteTabulatedAliasHandler.Column> columns : layouts) {
+            for (boolean csv : new boolean[]{false, true}) {
+                final StringWriter expected = new StringWriter();
+                final StringWriter actual = new StringWriter();
+                final WriteTabulatedAliasHandler reference = (WriteTabulatedAliasHandler) (csv
+                        ? WriteTabulatedAliasHandler.newCsvInstance(expected, columns)
+                        : WriteTabulatedAliasHandler.newTsvInstance(expected, columns));
+                final WriteDelimitedAliasHandler writer = csv
+                        ? WriteDelimitedAliasHandler.newCsvInstance(actual, columns)
+                        : WriteDelimitedAliasHandler.newTsvInstance(actual, columns);
+                for (Alias alias : aliases) {
+                    reference.handle(alias);
+                    writer.handle(alias);
+                }
+                reference.close();
+                writer.close();
+                assertEquals("Output differs for columns " + columns + (csv ? " as CSV" : " as TSV"),
+                        expected.toString(), actual.toString());
+            }
+        }
+    }
+
+}